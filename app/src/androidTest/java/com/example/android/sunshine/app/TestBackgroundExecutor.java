@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TestBackgroundExecutor extends AndroidTestCase {
+
+    private static final long WAIT_SECONDS = 5;
+
+    /* A task that holds its thread until the latch is released */
+    private static Runnable blockUntil(final CountDownLatch release) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(WAIT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    // Let the thread go
+                }
+            }
+        };
+    }
+
+    public void testUiVisibleLaneIsNotStarved() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // More background work than there are threads
+            for (int i = 0; i < 4; i++) {
+                BackgroundExecutor.submit(BackgroundExecutor.LANE_SYNC, "testSync", 0,
+                        blockUntil(release));
+                BackgroundExecutor.submit(BackgroundExecutor.LANE_MAINTENANCE, "testMaintenance",
+                        0, blockUntil(release));
+            }
+            final CountDownLatch ran = new CountDownLatch(1);
+            BackgroundExecutor.submit(BackgroundExecutor.LANE_UI_VISIBLE, "testUiVisible",
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            ran.countDown();
+                        }
+                    });
+            assertTrue("Error: UI visible task waited behind background work",
+                    ran.await(WAIT_SECONDS, TimeUnit.SECONDS));
+            assertTrue("Error: Queue depth wasn't recorded",
+                    BackgroundExecutor.getMaxQueueDepth(BackgroundExecutor.LANE_SYNC) > 0);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    public void testCancelQueuedTask() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean ran = new AtomicBoolean();
+        try {
+            // The maintenance lane only runs one task at a time
+            BackgroundExecutor.submit(BackgroundExecutor.LANE_MAINTENANCE, "testBlocking",
+                    blockUntil(release));
+            Future<?> queued = BackgroundExecutor.submit(BackgroundExecutor.LANE_MAINTENANCE,
+                    "testCancelled", new Runnable() {
+                        @Override
+                        public void run() {
+                            ran.set(true);
+                        }
+                    });
+            assertTrue("Error: Queued task couldn't be cancelled", queued.cancel(false));
+        } finally {
+            release.countDown();
+        }
+
+        final CountDownLatch after = new CountDownLatch(1);
+        BackgroundExecutor.submit(BackgroundExecutor.LANE_MAINTENANCE, "testAfter",
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        after.countDown();
+                    }
+                });
+        assertTrue(after.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertFalse("Error: Cancelled task ran", ran.get());
+    }
+
+    public void testTimeoutInterrupts() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        BackgroundExecutor.submit(BackgroundExecutor.LANE_UI_VISIBLE, "testSlow", 100,
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(TimeUnit.SECONDS.toMillis(WAIT_SECONDS * 2));
+                        } catch (InterruptedException e) {
+                            interrupted.set(true);
+                        }
+                        done.countDown();
+                    }
+                });
+        assertTrue(done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue("Error: Slow task wasn't interrupted", interrupted.get());
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.DayUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+
+public class TestDayFormatter extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDayFormatter.class.getSimpleName();
+
+    // What the forecast list shows
+    private static final int ROWS = 14;
+
+    private Locale mOriginalLocale;
+    private TimeZone mOriginalZone;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mOriginalLocale = Locale.getDefault();
+        mOriginalZone = TimeZone.getDefault();
+        DayFormatter.invalidate();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Locale.setDefault(mOriginalLocale);
+        TimeZone.setDefault(mOriginalZone);
+        DayUtils.invalidate();
+        DayFormatter.invalidate();
+        super.tearDown();
+    }
+
+    // The original Time and SimpleDateFormat based Utility.getDayName
+    static String legacyDayName(Context context, long dateInMillis) {
+        Time t = new Time();
+        t.setToNow();
+        int julianDay = Time.getJulianDay(dateInMillis, t.gmtoff);
+        int currentJulianDay = Time.getJulianDay(System.currentTimeMillis(), t.gmtoff);
+        if (julianDay == currentJulianDay) {
+            return context.getString(R.string.today);
+        } else if ( julianDay == currentJulianDay +1 ) {
+            return context.getString(R.string.tomorrow);
+        } else {
+            SimpleDateFormat dayFormat = new SimpleDateFormat("EEEE");
+            return dayFormat.format(dateInMillis);
+        }
+    }
+
+    // The original Utility.getFriendlyDayString
+    static String legacyFriendlyDayString(Context context, long dateInMillis, boolean displayLongToday) {
+        Time time = new Time();
+        time.setToNow();
+        long currentTime = System.currentTimeMillis();
+        int julianDay = Time.getJulianDay(dateInMillis, time.gmtoff);
+        int currentJulianDay = Time.getJulianDay(currentTime, time.gmtoff);
+
+        if (displayLongToday && julianDay == currentJulianDay) {
+            String today = context.getString(R.string.today);
+            int formatId = R.string.format_full_friendly_date;
+            return String.format(context.getString(
+                    formatId,
+                    today,
+                    new SimpleDateFormat("MMMM dd").format(dateInMillis)));
+        } else if ( julianDay < currentJulianDay + 7 ) {
+            return legacyDayName(context, dateInMillis);
+        } else {
+            SimpleDateFormat shortenedDateFormat = new SimpleDateFormat("EEE MMM dd");
+            return shortenedDateFormat.format(dateInMillis);
+        }
+    }
+
+    private static long dayStart(int daysFromToday) {
+        return DayUtils.getDayStart(DayUtils.getJulianDay(System.currentTimeMillis()) + daysFromToday);
+    }
+
+    private void assertMatchesLegacy() {
+        for (int i = -1; i < 21; i++) {
+            long date = dayStart(i);
+            assertEquals("Error: friendly day differs " + i + " days out",
+                    legacyFriendlyDayString(mContext, date, false),
+                    Utility.getFriendlyDayString(mContext, date, false));
+            assertEquals("Error: long friendly day differs " + i + " days out",
+                    legacyFriendlyDayString(mContext, date, true),
+                    Utility.getFriendlyDayString(mContext, date, true));
+            assertEquals("Error: day name differs " + i + " days out",
+                    legacyDayName(mContext, date), Utility.getDayName(mContext, date));
+        }
+    }
+
+    public void testMatchesLegacy() {
+        assertMatchesLegacy();
+        // and again, now that everything comes from the memo
+        assertMatchesLegacy();
+    }
+
+    public void testLocaleChange() {
+        long date = dayStart(10);
+        Locale.setDefault(Locale.US);
+        String english = Utility.getFriendlyDayString(mContext, date, false);
+        Locale.setDefault(Locale.GERMANY);
+        String german = Utility.getFriendlyDayString(mContext, date, false);
+        assertEquals(new SimpleDateFormat("EEE MMM dd", Locale.GERMANY).format(date), german);
+        assertFalse("Error: memo not cleared on locale change", english.equals(german));
+    }
+
+    /*
+        Over a DST change, consecutive local midnights are 23 or 25 hours apart, so they mustn't
+        share a memo entry.  Between them, these zones have a change ahead in standard time
+        whatever the date, which is when the days either side of it looked the same.
+     */
+    public void testAcrossDstChanges() {
+        String[] zones = {"America/New_York", "Australia/Sydney", "America/Sao_Paulo"};
+        for (String zone : zones) {
+            TimeZone.setDefault(TimeZone.getTimeZone(zone));
+            DayUtils.invalidate();
+            for (int i = 7; i < 400; i++) {
+                long date = dayStart(i);
+                assertEquals("Error: friendly day differs in " + zone + " " + i + " days out",
+                        new SimpleDateFormat("EEE MMM dd").format(date),
+                        Utility.getFriendlyDayString(mContext, date, false));
+            }
+        }
+    }
+
+    public void testRepeatedCallsReturnSameString() {
+        long date = dayStart(3);
+        assertSame(Utility.getFriendlyDayString(mContext, date, true),
+                Utility.getFriendlyDayString(mContext, date, true));
+    }
+
+    /*
+        Binding the forecast list asks for one date string per row.  Once the strings have been
+        made, a second bind of all 14 rows shouldn't need to allocate anything for them.
+     */
+    @SuppressWarnings("deprecation")
+    public void testBindAllocations() {
+        long[] dates = new long[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            dates[i] = dayStart(i);
+            Utility.getFriendlyDayString(mContext, dates[i], i == 0);
+        }
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        for (int i = 0; i < ROWS; i++) {
+            Utility.getFriendlyDayString(mContext, dates[i], i == 0);
+        }
+        int allocations = Debug.getThreadAllocCount();
+        Debug.stopAllocCounting();
+
+        Log.i(LOG_TAG, "Allocations formatting " + ROWS + " rows: " + allocations);
+        assertTrue("Error: Formatting " + ROWS + " cached rows made " + allocations + " allocations",
+                allocations < ROWS);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.net.Uri;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestDetailPrefetcher extends AndroidTestCase {
+
+    private static final String TEST_LOCATION = "99705";
+    private static final long TEST_DATE = 1419033600L;
+
+    public void testHitsAndMisses() {
+        final DetailPrefetcher prefetcher = DetailPrefetcher.get(mContext);
+        final Uri cached = WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, TEST_DATE);
+        Uri other = WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, TEST_DATE + 1);
+
+        DetailPrefetcher.Extras extras = new DetailPrefetcher.Extras(81f, 1020f, 5.5f, 270f);
+        prefetcher.put(cached, extras);
+
+        int hits = prefetcher.getHitCount();
+        int misses = prefetcher.getMissCount();
+        // A freshly built uri for the same day must find it
+        assertSame(extras, prefetcher.lookup(
+                WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, TEST_DATE)));
+        assertNull(prefetcher.lookup(other));
+        assertEquals(hits + 1, prefetcher.getHitCount());
+        assertEquals(misses + 1, prefetcher.getMissCount());
+    }
+
+    public void testWeatherChangeClearsCache() {
+        final DetailPrefetcher prefetcher = DetailPrefetcher.get(mContext);
+        final Uri cached = WeatherEntry.buildWeatherLocationWithDate(TEST_LOCATION, TEST_DATE);
+        prefetcher.put(cached, new DetailPrefetcher.Extras(81f, 1020f, 5.5f, 270f));
+
+        mContext.getContentResolver().notifyChange(WeatherEntry.CONTENT_URI, null);
+        // The observer runs on the main thread
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                return null == prefetcher.lookup(cached);
+            }
+        }.run();
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.MatrixCursor;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Parcel;
+import android.preference.PreferenceManager;
+import android.support.v7.widget.RecyclerView;
+import android.test.AndroidTestCase;
+import android.view.View;
+import android.widget.AbsListView;
+
+import com.example.android.sunshine.app.data.DayUtils;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class TestForecastAdapter extends AndroidTestCase {
+
+    private static final int ROWS = 14;
+
+    private SharedPreferences mPrefs;
+    private String mOriginalArtPack;
+
+    /*
+        Lets reads through until it's armed, then fails every one.
+     */
+    static class PoisonedCursor extends CursorWrapper {
+        boolean mArmed;
+
+        PoisonedCursor(Cursor cursor) {
+            super(cursor);
+        }
+
+        private void check() {
+            if (mArmed) {
+                throw new AssertionError("Error: Cursor was read while binding");
+            }
+        }
+
+        @Override
+        public boolean moveToPosition(int position) {
+            check();
+            return super.moveToPosition(position);
+        }
+
+        @Override
+        public long getLong(int columnIndex) {
+            check();
+            return super.getLong(columnIndex);
+        }
+
+        @Override
+        public int getInt(int columnIndex) {
+            check();
+            return super.getInt(columnIndex);
+        }
+
+        @Override
+        public double getDouble(int columnIndex) {
+            check();
+            return super.getDouble(columnIndex);
+        }
+
+        @Override
+        public String getString(int columnIndex) {
+            check();
+            return super.getString(columnIndex);
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mOriginalArtPack = mPrefs.getString(mContext.getString(R.string.pref_art_pack_key), null);
+        SettingsSnapshot.get(mContext);
+        // Keep Glide out of it, it isn't what we're testing
+        mPrefs.edit().putString(mContext.getString(R.string.pref_art_pack_key),
+                mContext.getString(R.string.pref_art_pack_sunshine)).commit();
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                return Utility.usingLocalGraphics(mContext);
+            }
+        }.run();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPrefs.edit().putString(mContext.getString(R.string.pref_art_pack_key), mOriginalArtPack)
+                .commit();
+        super.tearDown();
+    }
+
+    private static Cursor createForecastCursor() {
+        return createForecastCursor(0, ROWS, -1);
+    }
+
+    /*
+        Rows for the days from firstDay, relative to today.  The row for warmDay gets a high one
+        degree warmer than usual.
+     */
+    private static Cursor createForecastCursor(int firstDay, int rows, int warmDay) {
+        MatrixCursor cursor = new MatrixCursor(new String[] {
+                "_id", "date", "short_desc", "max", "min", "location_setting", "weather_id",
+                "coord_lat", "coord_long"});
+        int today = DayUtils.getJulianDay(System.currentTimeMillis());
+        for (int i = firstDay; i < firstDay + rows; i++) {
+            cursor.addRow(new Object[] {
+                    i, DayUtils.getDayStart(today + i), "Clear", 20.0 + i + (i == warmDay ? 1 : 0),
+                    10.0 - i, "99705", 800 - i * 50, 64.7488, -147.353});
+        }
+        return cursor;
+    }
+
+    private static void runOnMainSync(final Runnable runnable) throws Throwable {
+        final CountDownLatch done = new CountDownLatch(1);
+        final Throwable[] failure = new Throwable[1];
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+                done.countDown();
+            }
+        });
+        assertTrue("Error: Timed out waiting for the main thread", done.await(5, TimeUnit.SECONDS));
+        if (null != failure[0]) {
+            throw failure[0];
+        }
+    }
+
+    public void testItemsMatchUtility() {
+        Cursor cursor = createForecastCursor();
+        ForecastItem[] items = ForecastLoader.wrap(mContext, cursor).getItems();
+        assertEquals(ROWS, items.length);
+        cursor.moveToPosition(-1);
+        for (ForecastItem item : items) {
+            cursor.moveToNext();
+            long date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+            int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+            assertEquals(date, item.mDate);
+            assertEquals(Utility.getFriendlyDayString(mContext, date, false), item.mDateText);
+            assertEquals(Utility.getFriendlyDayString(mContext, date, true), item.mLongDateText);
+            assertEquals(Utility.getIconResourceForWeatherCondition(weatherId), item.mIconResource);
+            assertEquals(Utility.getStringForWeatherCondition(mContext, weatherId), item.mDescription);
+            assertEquals(Utility.formatTemperature(mContext,
+                    cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP)), item.mHighText);
+        }
+        cursor.close();
+    }
+
+    /*
+        Binding should only copy the prepared rows into the views.  The cursor underneath is
+        poisoned before the bind, so any formatting done at bind time (which needs the cursor's
+        values) fails the test.
+     */
+    public void testBindDoesNoFormatting() throws Throwable {
+        final PoisonedCursor cursor = new PoisonedCursor(createForecastCursor());
+        final ForecastLoader.ForecastCursor forecast = ForecastLoader.wrap(mContext, cursor);
+        cursor.mArmed = true;
+
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                ForecastAdapter adapter = new ForecastAdapter(mContext, null, new View(mContext),
+                        AbsListView.CHOICE_MODE_NONE);
+                adapter.swapCursor(forecast);
+                RecyclerView parent = new RecyclerView(mContext);
+                ForecastItem[] items = forecast.getItems();
+                for (int i = 0; i < adapter.getItemCount(); i++) {
+                    ForecastAdapter.ForecastAdapterViewHolder vh =
+                            adapter.onCreateViewHolder(parent, adapter.getItemViewType(i));
+                    adapter.onBindViewHolder(vh, i);
+                    assertEquals(i == 0 ? items[i].mLongDateText : items[i].mDateText,
+                            vh.mDateView.getText().toString());
+                    assertEquals(items[i].mLowText, vh.mLowTempView.getText().toString());
+                }
+            }
+        });
+        cursor.mArmed = false;
+        cursor.close();
+    }
+
+    /*
+        Records adapter notifications as strings, e.g. "remove 0+1" or "change 3 [8]".
+     */
+    static class RecordingObserver extends RecyclerView.AdapterDataObserver {
+        final List<String> mEvents = new ArrayList<String>();
+
+        @Override
+        public void onChanged() {
+            mEvents.add("all");
+        }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            mEvents.add("insert " + positionStart + "+" + itemCount);
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            mEvents.add("remove " + positionStart + "+" + itemCount);
+        }
+
+        @Override
+        public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+            mEvents.add("change " + positionStart + (null == payload ? "" : " [" + payload + "]"));
+        }
+    }
+
+    /*
+        The next day's sync drops yesterday, adds a day at the end and changes one forecast.
+        Only those rows, plus the new first row (which takes the "today" layout), should be
+        touched.
+     */
+    public void testSyncDiff() {
+        ForecastItem[] before = ForecastLoader.wrap(mContext, createForecastCursor(-1, ROWS, -1))
+                .getItems();
+        ForecastItem[] after = ForecastLoader.wrap(mContext, createForecastCursor(0, ROWS, 5))
+                .getItems();
+
+        ForecastAdapter adapter = new ForecastAdapter(mContext, null, new View(mContext),
+                AbsListView.CHOICE_MODE_NONE);
+        RecordingObserver observer = new RecordingObserver();
+        adapter.registerAdapterDataObserver(observer);
+
+        ForecastDiff diff = ForecastDiff.compute(before, after);
+        assertTrue(diff.appliesTo(before));
+        diff.dispatch(adapter);
+        assertEquals(Arrays.asList("remove 0+1", "change 0",
+                        "change 5 [" + ForecastDiff.PAYLOAD_TEMPERATURE + "]", "insert 13+1"),
+                observer.mEvents);
+
+        observer.mEvents.clear();
+        ForecastDiff.compute(after, after).dispatch(adapter);
+        assertTrue("Error: Identical rows produced notifications", observer.mEvents.isEmpty());
+    }
+
+    /*
+        A selected day should stay selected when a reload moves it, and be dropped when the day
+        is no longer in the forecast.
+     */
+    public void testSelectionFollowsDate() {
+        ForecastLoader.ForecastCursor before =
+                ForecastLoader.wrap(mContext, createForecastCursor(-1, ROWS, -1));
+        ForecastLoader.ForecastCursor after =
+                ForecastLoader.wrap(mContext, createForecastCursor(0, ROWS, -1));
+
+        ForecastAdapter adapter = new ForecastAdapter(mContext, null, new View(mContext),
+                AbsListView.CHOICE_MODE_SINGLE);
+        ItemChoiceManager icm = new ItemChoiceManager(adapter);
+        icm.setChoiceMode(AbsListView.CHOICE_MODE_SINGLE);
+        adapter.swapCursor(before);
+
+        long selectedDate = before.getItems()[3].mDate;
+        assertEquals(3, adapter.getPositionForId(selectedDate));
+        icm.mCheckStates.put(3, true);
+        icm.mCheckedIdStates.put(selectedDate, 3);
+
+        adapter.swapCursor(after);
+        assertEquals("Error: Selection didn't follow its day", 2, icm.getSelectedItemPosition());
+        assertEquals(2, adapter.getPositionForId(selectedDate));
+        assertEquals(RecyclerView.NO_POSITION,
+                adapter.getPositionForId(before.getItems()[0].mDate));
+
+        // yesterday has gone, so selecting it can't survive
+        icm.clearSelections();
+        icm.mCheckStates.put(0, true);
+        icm.mCheckedIdStates.put(before.getItems()[0].mDate, 0);
+        adapter.swapCursor(after);
+        assertEquals(RecyclerView.NO_POSITION, icm.getSelectedItemPosition());
+    }
+
+    public void testSummaryParcels() {
+        ForecastItem item = ForecastLoader.wrap(mContext, createForecastCursor()).getItems()[2];
+        ForecastSummary summary = new ForecastSummary(item);
+
+        Parcel parcel = Parcel.obtain();
+        summary.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        ForecastSummary copy = ForecastSummary.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        assertEquals(item.mDate, copy.mDate);
+        assertEquals(item.mWeatherId, copy.mWeatherId);
+        assertEquals(item.mHigh, copy.mHigh);
+        assertEquals(item.mLow, copy.mLow);
+        assertEquals(item.mHighText, Utility.formatTemperature(mContext, copy.mHigh));
+    }
+}
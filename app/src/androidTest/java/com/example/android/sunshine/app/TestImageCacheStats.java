@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+import com.bumptech.glide.request.RequestListener;
+
+public class TestImageCacheStats extends AndroidTestCase {
+
+    private static final String TEST_URL = "http://example.com/test-art.png";
+
+    public void testSourcesAreCounted() {
+        int surface = ImageCacheStats.SURFACE_DETAIL;
+        int memory = ImageCacheStats.getCount(surface, ImageCacheStats.SOURCE_MEMORY);
+        int disk = ImageCacheStats.getCount(surface, ImageCacheStats.SOURCE_DISK);
+        int network = ImageCacheStats.getCount(surface, ImageCacheStats.SOURCE_NETWORK);
+
+        RequestListener<String, Object> listener = ImageCacheStats.listener(surface);
+        // One fetch from the network, and two loads of the same url that weren't from memory:
+        // only the first of them can be put down to the fetch
+        ImageCacheStats.onNetworkFetch(TEST_URL);
+        listener.onResourceReady(new Object(), TEST_URL, null, false, true);
+        listener.onResourceReady(new Object(), TEST_URL, null, false, true);
+        listener.onResourceReady(new Object(), TEST_URL, null, true, true);
+
+        assertEquals("Error: Memory cache hit not counted", memory + 1,
+                ImageCacheStats.getCount(surface, ImageCacheStats.SOURCE_MEMORY));
+        assertEquals("Error: Disk cache hit not counted", disk + 1,
+                ImageCacheStats.getCount(surface, ImageCacheStats.SOURCE_DISK));
+        assertEquals("Error: Network fetch not counted", network + 1,
+                ImageCacheStats.getCount(surface, ImageCacheStats.SOURCE_NETWORK));
+    }
+}
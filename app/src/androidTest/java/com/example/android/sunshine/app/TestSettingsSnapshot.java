@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+public class TestSettingsSnapshot extends AndroidTestCase {
+
+    private SharedPreferences mPrefs;
+    private String mOriginalUnits;
+    private String mOriginalArtPack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mOriginalUnits = mPrefs.getString(mContext.getString(R.string.pref_units_key), null);
+        mOriginalArtPack = mPrefs.getString(mContext.getString(R.string.pref_art_pack_key), null);
+        // make sure the listener is registered before we start changing things
+        SettingsSnapshot.get(mContext);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mPrefs.edit()
+                .putString(mContext.getString(R.string.pref_units_key), mOriginalUnits)
+                .putString(mContext.getString(R.string.pref_art_pack_key), mOriginalArtPack)
+                .commit();
+        super.tearDown();
+    }
+
+    public void testUnitsChangeIsPublished() {
+        mPrefs.edit().putString(mContext.getString(R.string.pref_units_key),
+                mContext.getString(R.string.pref_units_imperial)).commit();
+        // Listeners are called on the main thread, so give it a moment
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                return !Utility.isMetric(mContext);
+            }
+        }.run();
+
+        mPrefs.edit().putString(mContext.getString(R.string.pref_units_key),
+                mContext.getString(R.string.pref_units_metric)).commit();
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                return Utility.isMetric(mContext);
+            }
+        }.run();
+    }
+
+    public void testArtPackChangeIsPublished() {
+        mPrefs.edit().putString(mContext.getString(R.string.pref_art_pack_key),
+                mContext.getString(R.string.pref_art_pack_cute_dogs)).commit();
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                return !Utility.usingLocalGraphics(mContext);
+            }
+        }.run();
+        assertEquals(String.format(mContext.getString(R.string.pref_art_pack_cute_dogs), "clear"),
+                Utility.getArtUrlForWeatherCondition(mContext, 800));
+    }
+
+    public void testUnchangedSettingsKeepSnapshot() {
+        SettingsSnapshot before = SettingsSnapshot.get(mContext);
+        // The sync adapter writes this one constantly, it mustn't cause a rebuild
+        Utility.resetLocationStatus(mContext);
+        assertSame(before, SettingsSnapshot.get(mContext));
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.test.AndroidTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TestWeatherEventBus extends AndroidTestCase {
+
+    private static final long WAIT_SECONDS = 5;
+
+    // Types of their own, so the tests don't see each other's events, or the app's
+    private static class DeliveredEvent {
+    }
+
+    private static class StickyEvent {
+    }
+
+    private static class UnheardEvent {
+    }
+
+    private HandlerThread mThread;
+    private Handler mHandler;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mThread = new HandlerThread("TestWeatherEventBus");
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mThread.quit();
+        super.tearDown();
+    }
+
+    public void testPostDelivers() throws InterruptedException {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final AtomicReference<DeliveredEvent> received = new AtomicReference<DeliveredEvent>();
+        WeatherEventBus.Subscriber<DeliveredEvent> subscriber =
+                new WeatherEventBus.Subscriber<DeliveredEvent>() {
+                    @Override
+                    public void onEvent(DeliveredEvent event) {
+                        received.set(event);
+                        delivered.countDown();
+                    }
+                };
+        WeatherEventBus.subscribe(DeliveredEvent.class, mHandler, subscriber);
+
+        DeliveredEvent event = new DeliveredEvent();
+        assertEquals("Error: Event wasn't handed to its subscriber", 1,
+                WeatherEventBus.post(event));
+        assertTrue(delivered.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertSame("Error: Subscriber got the wrong event", event, received.get());
+        assertTrue("Error: Bus delivery time wasn't recorded",
+                WeatherEventBus.getAverageLatencyMillis(WeatherEventBus.PATH_BUS) >= 0);
+
+        WeatherEventBus.unsubscribe(DeliveredEvent.class, subscriber);
+        assertEquals("Error: Event was handed to an unsubscribed subscriber", 0,
+                WeatherEventBus.post(new DeliveredEvent()));
+    }
+
+    public void testLatestIsSticky() {
+        assertNull(WeatherEventBus.getSticky(StickyEvent.class));
+
+        WeatherEventBus.post(new StickyEvent());
+        StickyEvent latest = new StickyEvent();
+        WeatherEventBus.post(latest);
+        assertSame("Error: Sticky event isn't the latest one posted", latest,
+                WeatherEventBus.getSticky(StickyEvent.class));
+    }
+
+    public void testPostWithoutSubscribers() {
+        assertEquals("Error: Event with no subscribers said it was delivered", 0,
+                WeatherEventBus.post(new UnheardEvent()));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.util.TimeZone;
+
+/*
+    Checks that DayUtils gives exactly the same answers as the android.text.format.Time code it
+    replaced, over several years and across every DST transition in a handful of zones.
+ */
+public class TestDayUtils extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestDayUtils.class.getSimpleName();
+
+    private static final long HOUR_IN_MILLIS = 1000L * 60 * 60;
+
+    // 2010-01-01 and 2030-01-01, UTC
+    private static final long RANGE_START = 1262304000000L;
+    private static final long RANGE_END = 1893456000000L;
+
+    private static final String[] ZONES = {
+            "America/Los_Angeles",  // DST at 2am local
+            "Europe/London",        // DST at 1am local, offset 0 in winter
+            "Australia/Sydney",     // southern hemisphere
+            "America/Sao_Paulo",    // DST at midnight local, so some days start at 1am
+            "Asia/Kolkata",         // half hour offset, no DST
+            "Pacific/Auckland",     // ahead of UTC by more than half a day
+            "UTC"
+    };
+
+    private TimeZone mOriginalZone;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mOriginalZone = TimeZone.getDefault();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        TimeZone.setDefault(mOriginalZone);
+        DayUtils.invalidate();
+        super.tearDown();
+    }
+
+    private static void useZone(String id) {
+        TimeZone.setDefault(TimeZone.getTimeZone(id));
+        DayUtils.invalidate();
+    }
+
+    // The original WeatherContract.normalizeDate
+    static long legacyNormalizeDate(long startDate) {
+        Time time = new Time();
+        time.set(startDate);
+        int julianDay = Time.getJulianDay(startDate, time.gmtoff);
+        return time.setJulianDay(julianDay);
+    }
+
+    // The original julian day lookup from SunshineSyncAdapter
+    static int legacyJulianDay(long millis) {
+        Time time = new Time();
+        time.set(millis);
+        return Time.getJulianDay(millis, time.gmtoff);
+    }
+
+    static long legacyDayStart(int julianDay) {
+        return new Time().setJulianDay(julianDay);
+    }
+
+    private void assertSameDay(String zone, long millis) {
+        assertEquals("Error: julian day differs in " + zone + " at " + millis,
+                legacyJulianDay(millis), DayUtils.getJulianDay(millis));
+        assertEquals("Error: normalized date differs in " + zone + " at " + millis,
+                legacyNormalizeDate(millis), DayUtils.normalizeDate(millis));
+    }
+
+    public void testNormalizeDateMatchesTime() {
+        for (String zone : ZONES) {
+            useZone(zone);
+            // An odd step so that we visit every time of day over the range
+            for (long millis = RANGE_START; millis < RANGE_END; millis += 7 * HOUR_IN_MILLIS + 13 * 60 * 1000) {
+                assertSameDay(zone, millis);
+            }
+        }
+    }
+
+    public void testDayStartMatchesTime() {
+        int firstDay = Time.getJulianDay(RANGE_START, 0);
+        int lastDay = Time.getJulianDay(RANGE_END, 0);
+        for (String zone : ZONES) {
+            useZone(zone);
+            for (int julianDay = firstDay; julianDay <= lastDay; julianDay++) {
+                assertEquals("Error: day start differs in " + zone + " for day " + julianDay,
+                        legacyDayStart(julianDay), DayUtils.getDayStart(julianDay));
+            }
+        }
+    }
+
+    public void testDstTransitions() {
+        for (String zone : ZONES) {
+            useZone(zone);
+            TimeZone tz = TimeZone.getDefault();
+            int transitions = 0;
+            for (long millis = RANGE_START; millis < RANGE_END; millis += HOUR_IN_MILLIS) {
+                if (tz.getOffset(millis) != tz.getOffset(millis + HOUR_IN_MILLIS)) {
+                    transitions++;
+                    // walk minute by minute through the hours either side of the change
+                    for (long t = millis - 3 * HOUR_IN_MILLIS; t < millis + 4 * HOUR_IN_MILLIS;
+                         t += 60 * 1000) {
+                        assertSameDay(zone, t);
+                    }
+                }
+            }
+            if (tz.useDaylightTime()) {
+                assertTrue("Error: expected DST transitions in " + zone, transitions > 0);
+            }
+        }
+    }
+
+    public void testZoneChangeDropsCachedOffset() {
+        long millis = RANGE_START + 12 * HOUR_IN_MILLIS;
+        useZone("America/Los_Angeles");
+        assertEquals(TimeZone.getDefault().getOffset(millis), DayUtils.getOffsetMillis(millis));
+
+        useZone("Asia/Tokyo");
+        assertEquals("Error: offset cached for the previous zone was used",
+                TimeZone.getDefault().getOffset(millis), DayUtils.getOffsetMillis(millis));
+        assertEquals("Error: day start in the previous zone was used",
+                legacyNormalizeDate(millis), DayUtils.normalizeDate(millis));
+    }
+
+    /*
+        Not a pass/fail test: logs the cost per call of both implementations so regressions can
+        be spotted on real hardware.
+     */
+    public void testNormalizeDateTiming() {
+        final int iterations = 100000;
+        long sink = 0;
+
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < iterations; i++) {
+            sink += legacyNormalizeDate(RANGE_START + i * 60000L);
+        }
+        long legacyElapsed = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < iterations; i++) {
+            sink += DayUtils.normalizeDate(RANGE_START + i * 60000L);
+        }
+        long elapsed = SystemClock.elapsedRealtime() - start;
+
+        Log.i(LOG_TAG, "normalizeDate x" + iterations + ": Time " + legacyElapsed + "ms, DayUtils "
+                + elapsed + "ms (" + sink + ")");
+    }
+}
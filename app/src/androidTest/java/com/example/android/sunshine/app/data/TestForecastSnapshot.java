@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.File;
+
+public class TestForecastSnapshot extends AndroidTestCase {
+
+    private static final int DAYS = 7;
+
+    private static final String[] PROJECTION = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+
+        long locationRowId = TestUtilities.insertNorthPoleLocationValues(mContext);
+        long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+        ContentValues[] values = new ContentValues[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            values[i] = TestUtilities.createWeatherValues(locationRowId);
+            values[i].put(WeatherEntry.COLUMN_DATE, DayUtils.getDayStart(
+                    DayUtils.getJulianDay(today) + i));
+            values[i].put(WeatherEntry.COLUMN_MAX_TEMP, 70 + i);
+        }
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    public void testSnapshotMatchesProvider() {
+        ForecastSnapshot.write(mContext, TestUtilities.TEST_LOCATION);
+        Cursor snapshot = ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION, PROJECTION);
+        assertNotNull("Error: No snapshot read back after writing one", snapshot);
+
+        Cursor live = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithStartDate(
+                        TestUtilities.TEST_LOCATION, System.currentTimeMillis()),
+                PROJECTION, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+
+        assertEquals("Error: Snapshot has a different number of rows to the provider",
+                live.getCount(), snapshot.getCount());
+        while (live.moveToNext()) {
+            assertTrue(snapshot.moveToNext());
+            for (int c = 0; c < PROJECTION.length; c++) {
+                assertEquals("Error: Snapshot differs from provider in " + PROJECTION[c],
+                        live.getString(c), snapshot.getString(c));
+            }
+        }
+        live.close();
+        snapshot.close();
+    }
+
+    public void testSnapshotForOtherLocationIgnored() {
+        ForecastSnapshot.write(mContext, TestUtilities.TEST_LOCATION);
+        assertNull("Error: Snapshot returned for a location it wasn't written for",
+                ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION + "0", PROJECTION));
+    }
+
+    public void testImportDropsSnapshot() {
+        String path = new File(mContext.getCacheDir(), "test_archive.bin").getAbsolutePath();
+        mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_EXPORT_CACHE, path, null);
+        ForecastSnapshot.write(mContext, TestUtilities.TEST_LOCATION);
+        assertNotNull(ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION, PROJECTION));
+
+        mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_IMPORT_CACHE, path, null);
+        new File(path).delete();
+        assertNull("Error: Snapshot of the rows before an import was still returned",
+                ForecastSnapshot.read(mContext, TestUtilities.TEST_LOCATION, PROJECTION));
+    }
+}
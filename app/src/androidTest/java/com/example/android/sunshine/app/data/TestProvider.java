@@ -287,6 +287,32 @@ public class TestProvider extends AndroidTestCase {
     }
 
 
+    /*
+        Inserting a location that is already there should hand back the existing row instead of
+        failing on the UNIQUE constraint, and should remember the id for the sync adapter.
+     */
+    public void testInsertExistingLocation() {
+        ContentValues values = TestUtilities.createNorthPoleLocationValues();
+
+        long firstId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, values));
+        long secondId = ContentUris.parseId(
+                mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, values));
+        assertEquals("Error: Inserting an existing location returned a different row",
+                firstId, secondId);
+        assertEquals("Error: Location id was not cached on insert",
+                firstId, LocationIdCache.get(TestUtilities.TEST_LOCATION));
+
+        Cursor cursor = mContext.getContentResolver().query(
+                LocationEntry.CONTENT_URI, null, null, null, null);
+        assertEquals("Error: Duplicate location rows after inserting twice", 1, cursor.getCount());
+        cursor.close();
+
+        deleteAllRecordsFromProvider();
+        assertEquals("Error: Location id cache not cleared by delete",
+                LocationIdCache.NO_ID, LocationIdCache.get(TestUtilities.TEST_LOCATION));
+    }
+
     // Make sure we can still delete after adding/updating stuff
     //
     // Student: Uncomment this test after you have completed writing the insert functionality
@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/*
+    Runs EXPLAIN QUERY PLAN over every query and delete the app makes against the provider and
+    fails if any of them scans a whole table or sorts in a temporary b-tree.  If you add a query
+    to the app, add it here too.
+ */
+public class TestQueryPlans extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestQueryPlans.class.getSimpleName();
+
+    private static final String SORT_ORDER = WeatherEntry.COLUMN_DATE + " ASC";
+
+    // Copies of the projections used by ForecastFragment, DetailWidgetRemoteViewsService and
+    // TodayWidgetIntentService, which keep theirs private.
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+
+    private static final String[] DETAIL_WIDGET_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP
+    };
+
+    private static final String[] TODAY_WIDGET_COLUMNS = {
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP
+    };
+
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        // Only the schema matters for the plans, so the database is used as it is found
+        mDb = new WeatherDbHelper(mContext).getReadableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        super.tearDown();
+    }
+
+    /*
+        Returns the plan as one line per step, and fails if any step is a full scan.
+     */
+    private String assertNoFullScan(String name, String sql, String[] args) {
+        Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        try {
+            int detailIndex = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailIndex)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        String planText = plan.toString();
+        Log.d(LOG_TAG, name + ":\n" + planText);
+
+        assertTrue("Error: No query plan for " + name, planText.length() > 0);
+        for (String step : planText.split("\n")) {
+            assertFalse("Error: " + name + " does a full scan: " + step, step.startsWith("SCAN"));
+            assertFalse("Error: " + name + " sorts in a temporary b-tree: " + step,
+                    step.contains("TEMP B-TREE"));
+        }
+        return planText;
+    }
+
+    private String joinQuery(String[] projection, String selection) {
+        return WeatherProvider.sWeatherByLocationSettingQueryBuilder.buildQuery(
+                projection, selection, null, null, SORT_ORDER, null);
+    }
+
+    // WEATHER_WITH_LOCATION with a start date: the forecast list, Muzei and both widgets
+    public void testLocationWithStartDatePlans() {
+        String[] args = {TestUtilities.TEST_LOCATION, Long.toString(TestUtilities.TEST_DATE)};
+        String[][] projections = {FORECAST_COLUMNS, DETAIL_WIDGET_COLUMNS, TODAY_WIDGET_COLUMNS};
+        for (String[] projection : projections) {
+            String plan = assertNoFullScan("location with start date",
+                    joinQuery(projection, WeatherProvider.sLocationSettingWithStartDateSelection),
+                    args);
+            assertTrue("Error: forecast query doesn't use the covering index:\n" + plan,
+                    plan.contains("COVERING INDEX " + WeatherDbHelper.WEATHER_LOCATION_DATE_INDEX));
+        }
+    }
+
+    // WEATHER_WITH_LOCATION without a start date
+    public void testLocationPlan() {
+        assertNoFullScan("location",
+                joinQuery(FORECAST_COLUMNS, WeatherProvider.sLocationSettingSelection),
+                new String[]{TestUtilities.TEST_LOCATION});
+    }
+
+    // WEATHER_WITH_LOCATION_AND_DATE: the detail view and the notification
+    public void testLocationAndDatePlan() {
+        assertNoFullScan("location and date",
+                joinQuery(null, WeatherProvider.sLocationSettingAndDaySelection),
+                new String[]{TestUtilities.TEST_LOCATION, Long.toString(TestUtilities.TEST_DATE)});
+    }
+
+    // LOCATION: the insert-or-get lookup
+    public void testLocationIdPlan() {
+        assertNoFullScan("location id",
+                "SELECT " + LocationEntry._ID + " FROM " + LocationEntry.TABLE_NAME +
+                        " WHERE " + WeatherProvider.sLocationIdSelection,
+                new String[]{TestUtilities.TEST_LOCATION});
+    }
+
+    // WEATHER delete: the sync adapter's retention delete of old days
+    public void testRetentionDeletePlan() {
+        assertNoFullScan("retention delete",
+                "DELETE FROM " + WeatherEntry.TABLE_NAME +
+                        " WHERE " + WeatherEntry.COLUMN_DATE + " <= ?",
+                new String[]{Long.toString(TestUtilities.TEST_DATE)});
+    }
+
+    /*
+        Not a pass/fail test: logs how long the forecast query takes through the provider with a
+        year of data for a handful of locations, so the effect of index changes can be measured
+        on real hardware.
+     */
+    public void testForecastQueryTiming() {
+        final int locations = 10;
+        final int days = 365;
+        final int iterations = 200;
+
+        // Go through the provider so we're timing the same database it reads
+        for (int l = 0; l < locations; l++) {
+            ContentValues location = TestUtilities.createNorthPoleLocationValues();
+            location.put(LocationEntry.COLUMN_LOCATION_SETTING, TestUtilities.TEST_LOCATION + l);
+            long locationId = ContentUris.parseId(
+                    mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, location));
+            ContentValues[] weather = new ContentValues[days];
+            for (int d = 0; d < days; d++) {
+                weather[d] = TestUtilities.createWeatherValues(locationId);
+                weather[d].put(WeatherEntry.COLUMN_DATE,
+                        TestUtilities.TEST_DATE + d * DayUtils.DAY_IN_MILLIS);
+            }
+            mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, weather);
+        }
+
+        Uri uri = WeatherEntry.buildWeatherLocationWithStartDate(
+                TestUtilities.TEST_LOCATION + (locations / 2),
+                TestUtilities.TEST_DATE + (days / 2) * DayUtils.DAY_IN_MILLIS);
+        int rows = 0;
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < iterations; i++) {
+            Cursor cursor = mContext.getContentResolver().query(
+                    uri, FORECAST_COLUMNS, null, null, SORT_ORDER);
+            rows = cursor.getCount();
+            cursor.close();
+        }
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        assertTrue("Error: forecast query returned no rows", rows > 0);
+
+        Log.i(LOG_TAG, "forecast query x" + iterations + " (" + rows + " rows): " + elapsed + "ms");
+
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+public class TestWeatherCacheArchive extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestWeatherCacheArchive.class.getSimpleName();
+
+    private static final String ALL_WEATHER_ORDER =
+            WeatherEntry.COLUMN_LOC_KEY + ", " + WeatherEntry.COLUMN_DATE;
+
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDb = new WeatherDbHelper(mContext).getWritableDatabase();
+        deleteAll();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAll();
+        mDb.close();
+        super.tearDown();
+    }
+
+    private void deleteAll() {
+        mDb.delete(WeatherEntry.TABLE_NAME, null, null);
+        mDb.delete(LocationEntry.TABLE_NAME, null, null);
+    }
+
+    /*
+        Fills the database with a year of made up weather for each of a number of locations.
+     */
+    private void insertSyntheticData(int locations, int days) {
+        mDb.beginTransaction();
+        try {
+            for (int l = 0; l < locations; l++) {
+                ContentValues location = TestUtilities.createNorthPoleLocationValues();
+                location.put(LocationEntry.COLUMN_LOCATION_SETTING, "loc" + l);
+                location.put(LocationEntry.COLUMN_CITY_NAME, "Città " + l);
+                location.put(LocationEntry.COLUMN_COORD_LAT, l * 0.5);
+                long locationId = mDb.insert(LocationEntry.TABLE_NAME, null, location);
+                for (int d = 0; d < days; d++) {
+                    ContentValues weather = TestUtilities.createWeatherValues(locationId);
+                    weather.put(WeatherEntry.COLUMN_DATE,
+                            TestUtilities.TEST_DATE + d * DayUtils.DAY_IN_MILLIS);
+                    weather.put(WeatherEntry.COLUMN_WEATHER_ID, 200 + (d % 600));
+                    weather.put(WeatherEntry.COLUMN_MAX_TEMP, 20.25 + d % 17);
+                    mDb.insert(WeatherEntry.TABLE_NAME, null, weather);
+                }
+            }
+            mDb.setTransactionSuccessful();
+        } finally {
+            mDb.endTransaction();
+        }
+    }
+
+    private byte[] export() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        WeatherCacheArchive.export(mDb, out);
+        return out.toByteArray();
+    }
+
+    private void assertSameRows(String table, String order, Cursor expected) {
+        Cursor actual = mDb.query(table, null, null, null, null, null, order);
+        assertEquals("Error: " + table + " row count changed", expected.getCount(), actual.getCount());
+        expected.moveToPosition(-1);
+        while (expected.moveToNext()) {
+            assertTrue(actual.moveToNext());
+            for (int c = 0; c < expected.getColumnCount(); c++) {
+                String column = expected.getColumnName(c);
+                // weather _ids are autoincrement and aren't carried across
+                if (table.equals(WeatherEntry.TABLE_NAME) && column.equals(WeatherEntry._ID)) {
+                    continue;
+                }
+                assertEquals("Error: " + table + "." + column + " changed",
+                        expected.getString(c), actual.getString(actual.getColumnIndex(column)));
+            }
+        }
+        actual.close();
+    }
+
+    public void testRoundTrip() throws IOException {
+        insertSyntheticData(5, 30);
+        Cursor locations = mDb.query(LocationEntry.TABLE_NAME, null, null, null, null, null,
+                LocationEntry._ID);
+        Cursor weather = mDb.query(WeatherEntry.TABLE_NAME, null, null, null, null, null,
+                ALL_WEATHER_ORDER);
+        // pull the rows into the cursor windows before the tables are emptied
+        locations.getCount();
+        weather.getCount();
+
+        byte[] archive = export();
+        deleteAll();
+
+        int rows = WeatherCacheArchive.restore(mDb, new ByteArrayInputStream(archive));
+        assertEquals("Error: Wrong number of rows restored", 5 + 5 * 30, rows);
+        assertSameRows(LocationEntry.TABLE_NAME, LocationEntry._ID, locations);
+        assertSameRows(WeatherEntry.TABLE_NAME, ALL_WEATHER_ORDER, weather);
+        locations.close();
+        weather.close();
+    }
+
+    public void testCorruptArchiveLeavesDatabaseAlone() throws IOException {
+        insertSyntheticData(2, 10);
+        byte[] archive = export();
+
+        // Flip one bit in the middle of the weather rows
+        archive[archive.length / 2] ^= 0x10;
+        try {
+            WeatherCacheArchive.restore(mDb, new ByteArrayInputStream(archive));
+            fail("Error: Corrupt archive was restored");
+        } catch (IOException expected) {
+            // good
+        }
+
+        // Cut the checksum off the end
+        byte[] truncated = new byte[archive.length - 4];
+        System.arraycopy(export(), 0, truncated, 0, truncated.length);
+        try {
+            WeatherCacheArchive.restore(mDb, new ByteArrayInputStream(truncated));
+            fail("Error: Truncated archive was restored");
+        } catch (IOException expected) {
+            // good
+        }
+
+        Cursor cursor = mDb.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+        assertEquals("Error: Failed restore changed the database", 20, cursor.getCount());
+        cursor.close();
+    }
+
+    public void testProviderCall() {
+        insertSyntheticData(1, 7);
+        String path = new File(mContext.getCacheDir(), "test_archive.bin").getAbsolutePath();
+
+        Bundle exported = mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_EXPORT_CACHE, path, null);
+        assertEquals(8, exported.getInt(WeatherContract.EXTRA_ROW_COUNT));
+
+        deleteAll();
+        Bundle imported = mContext.getContentResolver().call(WeatherContract.BASE_CONTENT_URI,
+                WeatherContract.METHOD_IMPORT_CACHE, path, null);
+        assertEquals(8, imported.getInt(WeatherContract.EXTRA_ROW_COUNT));
+        new File(path).delete();
+    }
+
+    /*
+        Not a pass/fail test: logs export and import rates for a large cache.
+     */
+    public void testThroughput() throws IOException {
+        final int locations = 50;
+        final int days = 365;
+        insertSyntheticData(locations, days);
+
+        long start = SystemClock.elapsedRealtime();
+        byte[] archive = export();
+        long exportElapsed = SystemClock.elapsedRealtime() - start;
+
+        start = SystemClock.elapsedRealtime();
+        int rows = WeatherCacheArchive.restore(mDb, new ByteArrayInputStream(archive));
+        long importElapsed = SystemClock.elapsedRealtime() - start;
+
+        assertEquals(locations + locations * days, rows);
+        Log.i(LOG_TAG, rows + " rows, " + archive.length + " bytes: export " + exportElapsed
+                + "ms, import " + importElapsed + "ms");
+    }
+}
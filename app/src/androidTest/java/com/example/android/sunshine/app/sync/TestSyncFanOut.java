@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.BackgroundExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TestSyncFanOut extends AndroidTestCase {
+
+    private static final long WAIT_SECONDS = 5;
+
+    public void testFailureIsIsolated() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        new SyncFanOut(mContext)
+                .add("testFails", BackgroundExecutor.LANE_UI_VISIBLE, 1000, new Runnable() {
+                    @Override
+                    public void run() {
+                        throw new IllegalStateException("Expected by the test");
+                    }
+                })
+                .add("testRuns", BackgroundExecutor.LANE_MAINTENANCE, 1000, new Runnable() {
+                    @Override
+                    public void run() {
+                        done.countDown();
+                    }
+                })
+                .start();
+
+        assertTrue("Error: A failing consumer stopped the next one",
+                done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    public void testSlowConsumerIsInterrupted() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        long start = System.currentTimeMillis();
+        new SyncFanOut(mContext)
+                .add("testSlow", BackgroundExecutor.LANE_UI_VISIBLE, 100, new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Thread.sleep(TimeUnit.SECONDS.toMillis(WAIT_SECONDS * 2));
+                        } catch (InterruptedException e) {
+                            interrupted.set(true);
+                        }
+                        done.countDown();
+                    }
+                })
+                .start();
+        // start() mustn't wait for the consumers
+        assertTrue("Error: start() waited for a consumer",
+                System.currentTimeMillis() - start < 100);
+
+        assertTrue(done.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue("Error: Slow consumer wasn't interrupted", interrupted.get());
+        // The duration is recorded just after the consumer returns
+        Thread.sleep(100);
+        assertTrue("Error: Duration wasn't recorded",
+                SyncFanOut.getLastDurationMillis("testSlow") >= 0);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Intent;
+import android.os.Parcel;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.WeatherEventBus;
+import com.example.android.sunshine.app.data.DayUtils;
+
+public class TestTodayForecast extends AndroidTestCase {
+
+    private static final String TEST_LOCATION = "99705";
+
+    public void testParcel() {
+        long today = DayUtils.normalizeDate(System.currentTimeMillis());
+        TodayForecast forecast = new TodayForecast(TEST_LOCATION, today, 321, 75, 65, "Drizzle");
+
+        Parcel parcel = Parcel.obtain();
+        forecast.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        TodayForecast read = TodayForecast.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        assertEquals(TEST_LOCATION, read.mLocationSetting);
+        assertEquals(today, read.mDate);
+        assertEquals(321, read.mWeatherId);
+        assertEquals(75.0, read.mHigh);
+        assertEquals(65.0, read.mLow);
+        assertEquals("Drizzle", read.mDescription);
+    }
+
+    public void testFromIntent() {
+        long today = DayUtils.normalizeDate(System.currentTimeMillis());
+        Intent intent = new Intent().putExtra(TodayForecast.EXTRA_TODAY,
+                new TodayForecast(TEST_LOCATION, today, 321, 75, 65, "Drizzle"));
+        assertNotNull("Error: Today's forecast wasn't used",
+                TodayForecast.fromIntent(intent, TEST_LOCATION));
+        assertNull("Error: Another location's forecast was used",
+                TodayForecast.fromIntent(intent, "94043"));
+
+        Intent stale = new Intent().putExtra(TodayForecast.EXTRA_TODAY,
+                new TodayForecast(TEST_LOCATION, today - DayUtils.DAY_IN_MILLIS, 321, 75, 65,
+                        "Drizzle"));
+        assertNull("Error: Yesterday's forecast was used",
+                TodayForecast.fromIntent(stale, TEST_LOCATION));
+        assertNull(TodayForecast.fromIntent(new Intent(), TEST_LOCATION));
+    }
+
+    public void testGetLatest() {
+        long today = DayUtils.normalizeDate(System.currentTimeMillis());
+        TodayForecast posted = new TodayForecast(TEST_LOCATION, today, 800, 80, 60, "Clear");
+        WeatherEventBus.post(new DataUpdatedEvent(0, posted));
+
+        assertSame("Error: The latest posted forecast wasn't used", posted,
+                TodayForecast.getLatest(new Intent(), TEST_LOCATION));
+        assertNull("Error: Another location's posted forecast was used",
+                TodayForecast.getLatest(null, "94043"));
+
+        Intent intent = new Intent().putExtra(TodayForecast.EXTRA_TODAY,
+                new TodayForecast(TEST_LOCATION, today, 321, 75, 65, "Drizzle"));
+        assertEquals("Error: The intent's forecast wasn't preferred", 321,
+                TodayForecast.getLatest(intent, TEST_LOCATION).mWeatherId);
+    }
+}
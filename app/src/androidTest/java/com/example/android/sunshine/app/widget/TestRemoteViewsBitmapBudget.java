@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.graphics.Bitmap;
+import android.test.AndroidTestCase;
+import android.widget.RemoteViews;
+
+import com.example.android.sunshine.app.R;
+
+public class TestRemoteViewsBitmapBudget extends AndroidTestCase {
+
+    private static final int ROWS = 14;
+
+    public void testFitSize() {
+        RemoteViewsBitmapBudget budget = new RemoteViewsBitmapBudget("test", ROWS);
+        int size = budget.fitSize(Integer.MAX_VALUE);
+        int share = RemoteViewsBitmapBudget.MAX_BYTES_PER_UPDATE / ROWS;
+        assertTrue("Error: Fitted size is over a row's share", size * size * 4 <= share);
+        assertEquals("Error: A small enough size should be left alone", 10, budget.fitSize(10));
+    }
+
+    public void testOverBudgetFallsBack() {
+        RemoteViewsBitmapBudget budget = new RemoteViewsBitmapBudget("test", ROWS);
+        RemoteViews views = new RemoteViews(mContext.getPackageName(),
+                R.layout.widget_detail_list_item);
+
+        int size = budget.fitSize(Integer.MAX_VALUE);
+        Bitmap fits = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        budget.setImageViewBitmap(views, 0, R.id.widget_icon, fits, R.drawable.ic_clear);
+        assertEquals("Error: Bitmap within the share wasn't counted",
+                fits.getRowBytes() * fits.getHeight(), budget.getTotalBytes());
+
+        // Replacing the row's bitmap with one that's too big drops it from the total
+        Bitmap tooBig = Bitmap.createBitmap(size * 2, size * 2, Bitmap.Config.ARGB_8888);
+        budget.setImageViewBitmap(views, 0, R.id.widget_icon, tooBig, R.drawable.ic_clear);
+        assertEquals("Error: Bitmap over the share was counted", 0, budget.getTotalBytes());
+    }
+}
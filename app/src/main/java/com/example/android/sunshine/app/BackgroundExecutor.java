@@ -0,0 +1,260 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The one pool of background threads the app's own work runs on: the widget, wear and GCM
+ * services, what follows a sync, and the art and detail prefetches.
+ *
+ * Work is queued in one of three lanes and taken most important lane first.  Sync and
+ * maintenance work together never have every thread, so something the user is looking at, like
+ * a widget refresh, doesn't wait behind a prefetch.  Each task's {@link Future} cancels it, and
+ * one given a timeout is interrupted when it runs past it.  How deep each lane's queue is, and
+ * has been, is kept for {@link #getQueueDepth} and {@link #getMaxQueueDepth}.
+ */
+public final class BackgroundExecutor {
+
+    private static final String LOG_TAG = BackgroundExecutor.class.getSimpleName();
+
+    // Something the user can see is waiting on it
+    public static final int LANE_UI_VISIBLE = 0;
+    // Keeping the data, and what's shown from it, up to date
+    public static final int LANE_SYNC = 1;
+    // Prefetches, registration and anything else that can wait
+    public static final int LANE_MAINTENANCE = 2;
+    private static final int LANE_COUNT = 3;
+
+    private static final int THREADS = 3;
+    // The most of each lane's tasks that may run at once
+    private static final int[] LANE_LIMITS = {THREADS, 2, 1};
+    private static final int[] LANE_THREAD_PRIORITIES = {
+            Process.THREAD_PRIORITY_DEFAULT,
+            Process.THREAD_PRIORITY_BACKGROUND,
+            Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE};
+
+    private static final AtomicInteger sSequence = new AtomicInteger();
+
+    private static final ThreadPoolExecutor sExecutor = new ThreadPoolExecutor(THREADS, THREADS,
+            0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, LOG_TAG + " #" + mCount.incrementAndGet());
+                }
+            });
+
+    // Interrupts tasks that run too long
+    private static final ScheduledExecutorService sWatchdog =
+            Executors.newSingleThreadScheduledExecutor();
+
+    private static final Object sLock = new Object();
+    // Tasks running in each lane, and outside the UI visible lane.  Guarded by sLock.
+    private static final int[] sRunning = new int[LANE_COUNT];
+    private static int sRunningInBackground;
+    // Tasks taken off the queue while their lane was full.  Guarded by sLock.
+    private static final List<Task> sDeferred = new ArrayList<Task>();
+
+    // Queued and not yet started, and the most there have been, for each lane
+    private static final AtomicIntegerArray sQueued = new AtomicIntegerArray(LANE_COUNT);
+    private static final AtomicIntegerArray sMaxQueued = new AtomicIntegerArray(LANE_COUNT);
+
+    private BackgroundExecutor() {
+    }
+
+    /**
+     * Queues a task with no timeout.
+     *
+     * @param lane one of the LANE_ constants
+     * @param name used in the log
+     * @return cancels the task, or interrupts it if it's running
+     */
+    public static Future<?> submit(int lane, String name, Runnable runnable) {
+        return submit(lane, name, 0, runnable);
+    }
+
+    /**
+     * Queues a task that's interrupted if it runs longer than {@code timeoutMillis}, or never
+     * is if that's 0.
+     */
+    public static Future<?> submit(int lane, String name, long timeoutMillis, Runnable runnable) {
+        Task task = new Task(lane, name, timeoutMillis, runnable);
+        int depth = sQueued.incrementAndGet(lane);
+        int max;
+        do {
+            max = sMaxQueued.get(lane);
+        } while (depth > max && !sMaxQueued.compareAndSet(lane, max, depth));
+        sExecutor.execute(task);
+        return task;
+    }
+
+    /**
+     * @return how many of a lane's tasks are waiting to start
+     */
+    public static int getQueueDepth(int lane) {
+        return sQueued.get(lane);
+    }
+
+    /**
+     * @return the most of a lane's tasks there have been waiting at once
+     */
+    public static int getMaxQueueDepth(int lane) {
+        return sMaxQueued.get(lane);
+    }
+
+    /* Claims a thread for the task, or puts it aside if its lane has all it may have */
+    private static boolean tryStart(Task task) {
+        synchronized (sLock) {
+            boolean inBackground = LANE_UI_VISIBLE != task.mLane;
+            if (sRunning[task.mLane] >= LANE_LIMITS[task.mLane]
+                    || (inBackground && sRunningInBackground >= THREADS - 1)) {
+                sDeferred.add(task);
+                return false;
+            }
+            sRunning[task.mLane]++;
+            if (inBackground) {
+                sRunningInBackground++;
+            }
+            return true;
+        }
+    }
+
+    /* Gives the task's thread back, and requeues anything that was waiting for one */
+    private static void finish(Task task) {
+        List<Task> deferred;
+        synchronized (sLock) {
+            sRunning[task.mLane]--;
+            if (LANE_UI_VISIBLE != task.mLane) {
+                sRunningInBackground--;
+            }
+            deferred = new ArrayList<Task>(sDeferred);
+            sDeferred.clear();
+        }
+        for (Task waiting : deferred) {
+            if (!waiting.isDone()) {
+                sExecutor.execute(waiting);
+            }
+        }
+    }
+
+    private static class Task extends FutureTask<Void> implements Comparable<Task> {
+        private final int mLane;
+        private final String mName;
+        private final long mTimeoutMillis;
+        // Equal lanes run in the order they were queued
+        private final int mSequence = sSequence.getAndIncrement();
+        private final long mQueuedAt = SystemClock.elapsedRealtime();
+        private final AtomicBoolean mLeftQueue = new AtomicBoolean();
+
+        Task(int lane, String name, long timeoutMillis, Runnable runnable) {
+            super(runnable, null);
+            mLane = lane;
+            mName = name;
+            mTimeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public int compareTo(Task another) {
+            if (mLane != another.mLane) {
+                return mLane < another.mLane ? -1 : 1;
+            }
+            return mSequence < another.mSequence ? -1 : (mSequence == another.mSequence ? 0 : 1);
+        }
+
+        /* Once, whether the task starts or is cancelled first */
+        private void leaveQueue() {
+            if (mLeftQueue.compareAndSet(false, true)) {
+                sQueued.decrementAndGet(mLane);
+            }
+        }
+
+        @Override
+        public void run() {
+            // Cancelled while it was queued
+            if (isDone() || !tryStart(this)) {
+                return;
+            }
+            leaveQueue();
+            long start = SystemClock.elapsedRealtime();
+            Process.setThreadPriority(LANE_THREAD_PRIORITIES[mLane]);
+            ScheduledFuture<?> watchdog = null;
+            if (0 < mTimeoutMillis) {
+                watchdog = sWatchdog.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cancel(true)) {
+                            Log.w(LOG_TAG, mName + " took more than " + mTimeoutMillis + "ms");
+                        }
+                    }
+                }, mTimeoutMillis, TimeUnit.MILLISECONDS);
+            }
+            try {
+                super.run();
+            } finally {
+                if (null != watchdog) {
+                    watchdog.cancel(false);
+                }
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                finish(this);
+                if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+                    Log.d(LOG_TAG, mName + " waited " + (start - mQueuedAt) + "ms, ran "
+                            + (SystemClock.elapsedRealtime() - start) + "ms, lane " + mLane
+                            + " has " + getQueueDepth(mLane) + " queued");
+                }
+            }
+        }
+
+        @Override
+        protected void done() {
+            leaveQueue();
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                get();
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, mName + " failed", e);
+            }
+        }
+    }
+}
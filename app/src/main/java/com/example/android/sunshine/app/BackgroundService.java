@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.Future;
+
+/**
+ * A service that handles its intents one at a time, as an {@link android.app.IntentService}
+ * does, but in a lane of the {@link BackgroundExecutor} rather than on a thread of its own.
+ *
+ * Stops itself once it has handled everything it was started with.  Anything still queued when
+ * it's destroyed is cancelled.
+ */
+public abstract class BackgroundService extends Service {
+
+    private final String mName;
+    private final int mLane;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // Starts waiting for the one before them to finish.  Main thread only.
+    private final Queue<Intent> mPendingIntents = new LinkedList<Intent>();
+    private final Queue<Integer> mPendingStartIds = new LinkedList<Integer>();
+    // The intent being handled, if one is.  Main thread only.
+    private Future<?> mCurrent;
+
+    /**
+     * @param name used in the log
+     * @param lane the BackgroundExecutor.LANE_ constant to run in
+     */
+    protected BackgroundService(String name, int lane) {
+        mName = name;
+        mLane = lane;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        mPendingIntents.add(intent);
+        mPendingStartIds.add(startId);
+        if (null == mCurrent) {
+            handleNext();
+        }
+        return START_NOT_STICKY;
+    }
+
+    private void handleNext() {
+        if (mPendingIntents.isEmpty()) {
+            return;
+        }
+        final Intent intent = mPendingIntents.remove();
+        final int startId = mPendingStartIds.remove();
+        mCurrent = BackgroundExecutor.submit(mLane, mName, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    onHandleIntent(intent);
+                } finally {
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mCurrent = null;
+                            stopSelf(startId);
+                            handleNext();
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        if (null != mCurrent) {
+            mCurrent.cancel(true);
+        }
+        mPendingIntents.clear();
+        mPendingStartIds.clear();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /**
+     * Handles one of the intents the service was started with, on a background thread.
+     */
+    protected abstract void onHandleIntent(Intent intent);
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.support.v4.util.LongSparseArray;
+
+import com.example.android.sunshine.app.data.DayUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Renders the day strings shown in the forecast list, the detail view and the widgets.
+ *
+ * A forecast only ever covers a couple of weeks, so the same few strings are asked for over and
+ * over.  They are remembered per date and style, and the SimpleDateFormats behind them are
+ * built once.  Everything is thrown away when the locale, the time zone or the current day
+ * changes, since any of those can change the text.
+ *
+ * SimpleDateFormat isn't thread safe and the widgets format from binder threads, so all the
+ * state is guarded by the class lock.
+ */
+public final class DayFormatter {
+
+    // Styles, the low bits of the memo key
+    private static final int STYLE_FRIENDLY = 0;
+    private static final int STYLE_FRIENDLY_LONG_TODAY = 1;
+    private static final int STYLE_FULL_FRIENDLY = 2;
+    private static final int STYLE_DAY_NAME = 3;
+    private static final int STYLE_MONTH_DAY = 4;
+    private static final int STYLE_BITS = 3;
+
+    // A forecast is 14 days in at most 5 styles; anything much past that is stale
+    private static final int MAX_MEMO_SIZE = 128;
+
+    private static Locale sLocale;
+    private static int sZoneGeneration;
+    private static int sCurrentJulianDay;
+
+    private static SimpleDateFormat sShortDateFormat;
+    private static SimpleDateFormat sDayNameFormat;
+    private static SimpleDateFormat sMonthDayFormat;
+
+    private static final LongSparseArray<String> sMemo = new LongSparseArray<String>();
+
+    private DayFormatter() {
+    }
+
+    /**
+     * Drops every cached string and formatter.  Normally the checks in each call take care of
+     * this; it's here for tests and for anything that changes resources behind our back.
+     */
+    public static synchronized void invalidate() {
+        sLocale = null;
+        sMemo.clear();
+    }
+
+    /*
+        Makes sure the formatters and memo belong to the current locale, zone and day.  Must be
+        called with the class lock held.
+     */
+    private static void validate(long now) {
+        Locale locale = Locale.getDefault();
+        int generation = DayUtils.getGeneration();
+        int currentJulianDay = DayUtils.getJulianDay(now);
+
+        if (locale != sLocale || generation != sZoneGeneration) {
+            // SimpleDateFormat picks up both the default locale and zone when it's built
+            sShortDateFormat = new SimpleDateFormat("EEE MMM dd");
+            sDayNameFormat = new SimpleDateFormat("EEEE");
+            sMonthDayFormat = new SimpleDateFormat("MMMM dd");
+            sLocale = locale;
+            sZoneGeneration = generation;
+            sMemo.clear();
+        } else if (currentJulianDay != sCurrentJulianDay || sMemo.size() > MAX_MEMO_SIZE) {
+            // "Today" and "Tomorrow" have moved on
+            sMemo.clear();
+        }
+        sCurrentJulianDay = currentJulianDay;
+    }
+
+    private static synchronized String format(Context context, long dateInMillis, int style) {
+        long now = System.currentTimeMillis();
+        validate(now);
+
+        // Keyed by the date itself: days worked out with today's offset can repeat across a DST
+        // change, as local midnights either side of it are 23 or 25 hours apart
+        long key = (dateInMillis << STYLE_BITS) | style;
+        String result = sMemo.get(key);
+        if (null == result) {
+            // Both days are worked out with today's offset, as the original Time based code did
+            long gmtoff = DayUtils.getOffsetMillis(now) / 1000;
+            int julianDay = DayUtils.getJulianDay(dateInMillis, gmtoff);
+            int currentJulianDay = DayUtils.getJulianDay(now, gmtoff);
+            result = render(context, dateInMillis, style, julianDay, currentJulianDay);
+            sMemo.put(key, result);
+        }
+        return result;
+    }
+
+    private static String render(Context context, long dateInMillis, int style,
+                                 int julianDay, int currentJulianDay) {
+        switch (style) {
+            case STYLE_FRIENDLY_LONG_TODAY:
+                if (julianDay == currentJulianDay) {
+                    // "Today, June 24"
+                    return context.getString(R.string.format_full_friendly_date,
+                            context.getString(R.string.today),
+                            sMonthDayFormat.format(dateInMillis));
+                }
+                // fall through
+            case STYLE_FRIENDLY:
+                if (julianDay < currentJulianDay + 7) {
+                    // Less than a week away, just the day name
+                    return render(context, dateInMillis, STYLE_DAY_NAME, julianDay, currentJulianDay);
+                }
+                // "Mon Jun 3"
+                return sShortDateFormat.format(dateInMillis);
+            case STYLE_FULL_FRIENDLY:
+                return context.getString(R.string.format_full_friendly_date,
+                        render(context, dateInMillis, STYLE_DAY_NAME, julianDay, currentJulianDay),
+                        sMonthDayFormat.format(dateInMillis));
+            case STYLE_DAY_NAME:
+                if (julianDay == currentJulianDay) {
+                    return context.getString(R.string.today);
+                } else if (julianDay == currentJulianDay + 1) {
+                    return context.getString(R.string.tomorrow);
+                }
+                // e.g "Wednesday"
+                return sDayNameFormat.format(dateInMillis);
+            case STYLE_MONTH_DAY:
+                return sMonthDayFormat.format(dateInMillis);
+            default:
+                throw new IllegalArgumentException("Unknown style " + style);
+        }
+    }
+
+    /**
+     * @see Utility#getFriendlyDayString(Context, long, boolean)
+     */
+    public static String getFriendlyDayString(Context context, long dateInMillis,
+                                              boolean displayLongToday) {
+        return format(context, dateInMillis,
+                displayLongToday ? STYLE_FRIENDLY_LONG_TODAY : STYLE_FRIENDLY);
+    }
+
+    /**
+     * @see Utility#getFullFriendlyDayString(Context, long)
+     */
+    public static String getFullFriendlyDayString(Context context, long dateInMillis) {
+        return format(context, dateInMillis, STYLE_FULL_FRIENDLY);
+    }
+
+    /**
+     * @see Utility#getDayName(Context, long)
+     */
+    public static String getDayName(Context context, long dateInMillis) {
+        return format(context, dateInMillis, STYLE_DAY_NAME);
+    }
+
+    /**
+     * @see Utility#getFormattedMonthDay(Context, long)
+     */
+    public static String getFormattedMonthDay(Context context, long dateInMillis) {
+        return format(context, dateInMillis, STYLE_MONTH_DAY);
+    }
+}
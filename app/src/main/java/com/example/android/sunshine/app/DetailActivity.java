@@ -39,6 +39,9 @@ public class DetailActivity extends AppCompatActivity {
             Bundle arguments = new Bundle();
             arguments.putParcelable(DetailFragment.DETAIL_URI, getIntent().getData());
             arguments.putBoolean(DetailFragment.DETAIL_TRANSITION_ANIMATION, true);
+            // Only there when we came from the forecast list
+            arguments.putParcelable(DetailFragment.DETAIL_SUMMARY,
+                    getIntent().getParcelableExtra(DetailFragment.DETAIL_SUMMARY));
 
             DetailFragment fragment = new DetailFragment();
             fragment.setArguments(arguments);
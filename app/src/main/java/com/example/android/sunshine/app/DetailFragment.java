@@ -16,9 +16,11 @@
 package com.example.android.sunshine.app;
 
 import android.content.Intent;
+import android.database.ContentObserver;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.CursorLoader;
@@ -38,6 +40,7 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
 
@@ -49,42 +52,57 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
     private static final String LOG_TAG = DetailFragment.class.getSimpleName();
     static final String DETAIL_URI = "URI";
     static final String DETAIL_TRANSITION_ANIMATION = "DTA";
+    static final String DETAIL_SUMMARY = "SUMMARY";
 
     private static final String FORECAST_SHARE_HASHTAG = " #SunshineApp";
 
     private String mForecast;
     private Uri mUri;
     private boolean mTransitionAnimation;
+    // What the list showed for the day, if we were opened from it
+    private ForecastSummary mSummary;
+    // Only set while the whole view came from memory, see watchForChanges
+    private ContentObserver mChangeObserver;
 
     private static final int DETAIL_LOADER = 0;
 
     private static final String[] DETAIL_COLUMNS = {
             WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
-            WeatherEntry.COLUMN_DATE,
-            WeatherEntry.COLUMN_SHORT_DESC,
-            WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherEntry.COLUMN_MIN_TEMP,
             WeatherEntry.COLUMN_HUMIDITY,
             WeatherEntry.COLUMN_PRESSURE,
             WeatherEntry.COLUMN_WIND_SPEED,
             WeatherEntry.COLUMN_DEGREES,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
             WeatherEntry.COLUMN_WEATHER_ID,
             // This works because the WeatherProvider returns location data joined with
             // weather data, even though they're stored in two different tables.
             WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING
     };
 
+    // When the list has given us a ForecastSummary, only the columns it doesn't have are
+    // loaded: the start of DETAIL_COLUMNS, so the indices below work for both.
+    private static final String[] DETAIL_EXTRA_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
     // These indices are tied to DETAIL_COLUMNS.  If DETAIL_COLUMNS changes, these
     // must change.
     public static final int COL_WEATHER_ID = 0;
-    public static final int COL_WEATHER_DATE = 1;
-    public static final int COL_WEATHER_DESC = 2;
-    public static final int COL_WEATHER_MAX_TEMP = 3;
-    public static final int COL_WEATHER_MIN_TEMP = 4;
-    public static final int COL_WEATHER_HUMIDITY = 5;
-    public static final int COL_WEATHER_PRESSURE = 6;
-    public static final int COL_WEATHER_WIND_SPEED = 7;
-    public static final int COL_WEATHER_DEGREES = 8;
+    public static final int COL_WEATHER_HUMIDITY = 1;
+    public static final int COL_WEATHER_PRESSURE = 2;
+    public static final int COL_WEATHER_WIND_SPEED = 3;
+    public static final int COL_WEATHER_DEGREES = 4;
+    public static final int COL_WEATHER_DATE = 5;
+    public static final int COL_WEATHER_DESC = 6;
+    public static final int COL_WEATHER_MAX_TEMP = 7;
+    public static final int COL_WEATHER_MIN_TEMP = 8;
     public static final int COL_WEATHER_CONDITION_ID = 9;
 
     private ImageView mIconView;
@@ -111,6 +129,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
         if (arguments != null) {
             mUri = arguments.getParcelable(DetailFragment.DETAIL_URI);
             mTransitionAnimation = arguments.getBoolean(DetailFragment.DETAIL_TRANSITION_ANIMATION, false);
+            mSummary = arguments.getParcelable(DetailFragment.DETAIL_SUMMARY);
         }
 
         View rootView = inflater.inflate(R.layout.fragment_detail_start, container, false);
@@ -153,6 +172,20 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
+        if ( null != mSummary && null != mUri ) {
+            // Draw what the list gave us now, and let the loader fill in the rest
+            bindSummary(mSummary);
+            DetailPrefetcher.Extras extras = DetailPrefetcher.get(getActivity()).lookup(mUri);
+            if ( null != extras ) {
+                // Nothing left to load until the weather changes
+                bindExtras(extras);
+                watchForChanges();
+                finishLayout();
+                super.onActivityCreated(savedInstanceState);
+                return;
+            }
+            finishLayout();
+        }
         getLoaderManager().initLoader(DETAIL_LOADER, null, this);
         super.onActivityCreated(savedInstanceState);
     }
@@ -164,6 +197,9 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
             Uri updatedUri = WeatherContract.WeatherEntry.buildWeatherLocationWithDate(newLocation, date);
             mUri = updatedUri;
+            // The summary was for the old location
+            mSummary = null;
+            stopWatchingForChanges();
             getLoaderManager().restartLoader(DETAIL_LOADER, null, this);
         }
     }
@@ -176,7 +212,7 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
             return new CursorLoader(
                     getActivity(),
                     mUri,
-                    DETAIL_COLUMNS,
+                    null != mSummary ? DETAIL_EXTRA_COLUMNS : DETAIL_COLUMNS,
                     null,
                     null,
                     null
@@ -197,73 +233,127 @@ public class DetailFragment extends Fragment implements LoaderManager.LoaderCall
                 ((View)vp).setVisibility(View.VISIBLE);
             }
 
-            // Read weather condition ID from cursor
-            int weatherId = data.getInt(COL_WEATHER_CONDITION_ID);
-
-            if ( Utility.usingLocalGraphics(getActivity()) ) {
-                mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
+            if ( data.getColumnCount() == DETAIL_COLUMNS.length ) {
+                bindSummary(new ForecastSummary(data.getLong(COL_WEATHER_DATE),
+                        data.getInt(COL_WEATHER_CONDITION_ID),
+                        data.getDouble(COL_WEATHER_MAX_TEMP),
+                        data.getDouble(COL_WEATHER_MIN_TEMP)));
             } else {
-                // Use weather art image
-                Glide.with(this)
-                        .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
-                        .error(Utility.getArtResourceForWeatherCondition(weatherId))
-                        .crossFade()
-                        .into(mIconView);
+                // The summary may be out of date by the time the weather changes, so any
+                // reload from here on fetches the whole row
+                ((CursorLoader) loader).setProjection(DETAIL_COLUMNS);
+            }
+
+            DetailPrefetcher.Extras extras = new DetailPrefetcher.Extras(
+                    data.getFloat(COL_WEATHER_HUMIDITY),
+                    data.getFloat(COL_WEATHER_PRESSURE),
+                    data.getFloat(COL_WEATHER_WIND_SPEED),
+                    data.getFloat(COL_WEATHER_DEGREES));
+            bindExtras(extras);
+            // so coming back to this day doesn't need a query
+            DetailPrefetcher.get(getActivity()).put(mUri, extras);
+        }
+        finishLayout();
+    }
+
+    /*
+        Updates humidity, wind and pressure.
+     */
+    private void bindExtras(DetailPrefetcher.Extras extras) {
+        mHumidityView.setText(getActivity().getString(R.string.format_humidity, extras.mHumidity));
+        mHumidityView.setContentDescription(getString(R.string.a11y_humidity, mHumidityView.getText()));
+        mHumidityLabelView.setContentDescription(mHumidityView.getContentDescription());
+
+        mWindView.setText(Utility.getFormattedWind(getActivity(), extras.mWindSpeed, extras.mDegrees));
+        mWindView.setContentDescription(getString(R.string.a11y_wind, mWindView.getText()));
+        mWindLabelView.setContentDescription(mWindView.getContentDescription());
+
+        mPressureView.setText(getString(R.string.format_pressure, extras.mPressure));
+        mPressureView.setContentDescription(getString(R.string.a11y_pressure, mPressureView.getText()));
+        mPressureLabelView.setContentDescription(mPressureView.getContentDescription());
+    }
+
+    /*
+        When everything came from memory there's no loader watching the provider, so start one
+        with the whole row if the weather changes while we're showing.
+     */
+    private void watchForChanges() {
+        mChangeObserver = new ContentObserver(new Handler()) {
+            @Override
+            public void onChange(boolean selfChange) {
+                stopWatchingForChanges();
+                mSummary = null;
+                getLoaderManager().restartLoader(DETAIL_LOADER, null, DetailFragment.this);
             }
+        };
+        getActivity().getContentResolver().registerContentObserver(
+                WeatherEntry.CONTENT_URI, true, mChangeObserver);
+    }
+
+    private void stopWatchingForChanges() {
+        if ( null != mChangeObserver ) {
+            getActivity().getContentResolver().unregisterContentObserver(mChangeObserver);
+            mChangeObserver = null;
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        stopWatchingForChanges();
+        super.onDestroyView();
+    }
 
-            // Read date from cursor and update views for day of week and date
-            long date = data.getLong(COL_WEATHER_DATE);
-            String dateText = Utility.getFullFriendlyDayString(getActivity(),date);
-            mDateView.setText(dateText);
-
-            // Get description from weather condition ID
-            String description = Utility.getStringForWeatherCondition(getActivity(), weatherId);
-            mDescriptionView.setText(description);
-            mDescriptionView.setContentDescription(getString(R.string.a11y_forecast, description));
-
-            // For accessibility, add a content description to the icon field. Because the ImageView
-            // is independently focusable, it's better to have a description of the image. Using
-            // null is appropriate when the image is purely decorative or when the image already
-            // has text describing it in the same UI component.
-            mIconView.setContentDescription(getString(R.string.a11y_forecast_icon, description));
-
-            // Read high temperature from cursor and update view
-            boolean isMetric = Utility.isMetric(getActivity());
-
-            double high = data.getDouble(COL_WEATHER_MAX_TEMP);
-            String highString = Utility.formatTemperature(getActivity(), high);
-            mHighTempView.setText(highString);
-            mHighTempView.setContentDescription(getString(R.string.a11y_high_temp, highString));
-
-            // Read low temperature from cursor and update view
-            double low = data.getDouble(COL_WEATHER_MIN_TEMP);
-            String lowString = Utility.formatTemperature(getActivity(), low);
-            mLowTempView.setText(lowString);
-            mLowTempView.setContentDescription(getString(R.string.a11y_low_temp, lowString));
-
-            // Read humidity from cursor and update view
-            float humidity = data.getFloat(COL_WEATHER_HUMIDITY);
-            mHumidityView.setText(getActivity().getString(R.string.format_humidity, humidity));
-            mHumidityView.setContentDescription(getString(R.string.a11y_humidity, mHumidityView.getText()));
-            mHumidityLabelView.setContentDescription(mHumidityView.getContentDescription());
-
-            // Read wind speed and direction from cursor and update view
-            float windSpeedStr = data.getFloat(COL_WEATHER_WIND_SPEED);
-            float windDirStr = data.getFloat(COL_WEATHER_DEGREES);
-            mWindView.setText(Utility.getFormattedWind(getActivity(), windSpeedStr, windDirStr));
-            mWindView.setContentDescription(getString(R.string.a11y_wind, mWindView.getText()));
-            mWindLabelView.setContentDescription(mWindView.getContentDescription());
-
-            // Read pressure from cursor and update view
-            float pressure = data.getFloat(COL_WEATHER_PRESSURE);
-            mPressureView.setText(getString(R.string.format_pressure, pressure));
-            mPressureView.setContentDescription(getString(R.string.a11y_pressure, mPressureView.getText()));
-            mPressureLabelView.setContentDescription(mPressureView.getContentDescription());
-
-            // We still need this for the share intent
-            mForecast = String.format("%s - %s - %s/%s", dateText, description, high, low);
+    /*
+        Updates the icon, date, description and temperatures.
+     */
+    private void bindSummary(ForecastSummary summary) {
+        int weatherId = summary.mWeatherId;
 
+        if ( Utility.usingLocalGraphics(getActivity()) ) {
+            mIconView.setImageResource(Utility.getArtResourceForWeatherCondition(weatherId));
+        } else {
+            // Use weather art image
+            Glide.with(this)
+                    .load(Utility.getArtUrlForWeatherCondition(getActivity(), weatherId))
+                    .error(Utility.getArtResourceForWeatherCondition(weatherId))
+                    .listener(ImageCacheStats.<String, GlideDrawable>listener(
+                            ImageCacheStats.SURFACE_DETAIL))
+                    .crossFade()
+                    .into(mIconView);
         }
+
+        // Update views for day of week and date
+        String dateText = Utility.getFullFriendlyDayString(getActivity(), summary.mDate);
+        mDateView.setText(dateText);
+
+        // Get description from weather condition ID
+        String description = Utility.getStringForWeatherCondition(getActivity(), weatherId);
+        mDescriptionView.setText(description);
+        mDescriptionView.setContentDescription(getString(R.string.a11y_forecast, description));
+
+        // For accessibility, add a content description to the icon field. Because the ImageView
+        // is independently focusable, it's better to have a description of the image. Using
+        // null is appropriate when the image is purely decorative or when the image already
+        // has text describing it in the same UI component.
+        mIconView.setContentDescription(getString(R.string.a11y_forecast_icon, description));
+
+        String highString = Utility.formatTemperature(getActivity(), summary.mHigh);
+        mHighTempView.setText(highString);
+        mHighTempView.setContentDescription(getString(R.string.a11y_high_temp, highString));
+
+        String lowString = Utility.formatTemperature(getActivity(), summary.mLow);
+        mLowTempView.setText(lowString);
+        mLowTempView.setContentDescription(getString(R.string.a11y_low_temp, lowString));
+
+        // We still need this for the share intent
+        mForecast = String.format("%s - %s - %s/%s", dateText, description, summary.mHigh, summary.mLow);
+    }
+
+    /*
+        Starts the postponed enter transition, or sets up the pane's toolbar, once there's
+        something to show.
+     */
+    private void finishLayout() {
         AppCompatActivity activity = (AppCompatActivity)getActivity();
         Toolbar toolbarView = (Toolbar) getView().findViewById(R.id.toolbar);
 
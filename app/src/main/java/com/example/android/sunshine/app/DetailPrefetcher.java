@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the detail rows for the days either side of the selected one in memory, so that moving
+ * through the days in the two-pane layout doesn't wait on the provider each time.
+ *
+ * {@link DetailFragment} already has a {@link ForecastSummary} for the day it's showing, so only
+ * the columns it would otherwise load are cached: humidity, pressure and wind.  Prefetching waits
+ * until the main thread is idle, then runs in the {@link BackgroundExecutor}, and also warms
+ * Glide's disk cache with the days' art.  Everything is dropped whenever the weather data changes.
+ */
+public class DetailPrefetcher {
+
+    private static final String LOG_TAG = DetailPrefetcher.class.getSimpleName();
+
+    // How many days either side of the selection to load
+    private static final int NEIGHBOURS = 2;
+    // A little more than the neighbours of two selections
+    private static final int MAX_ENTRIES = 12;
+    // Don't hold the prefetch thread forever on a slow download
+    private static final long ART_TIMEOUT_SECONDS = 10;
+
+    private static final String[] PREFETCH_COLUMNS = {
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+    private static final int COL_DATE = 0;
+    private static final int COL_HUMIDITY = 1;
+    private static final int COL_PRESSURE = 2;
+    private static final int COL_WIND_SPEED = 3;
+    private static final int COL_DEGREES = 4;
+
+    private static DetailPrefetcher sInstance;
+
+    /**
+     * The detail columns a {@link ForecastSummary} doesn't have.
+     */
+    public static class Extras {
+        public final float mHumidity;
+        public final float mPressure;
+        public final float mWindSpeed;
+        public final float mDegrees;
+
+        public Extras(float humidity, float pressure, float windSpeed, float degrees) {
+            mHumidity = humidity;
+            mPressure = pressure;
+            mWindSpeed = windSpeed;
+            mDegrees = degrees;
+        }
+    }
+
+    private final Context mContext;
+    // Keyed by the detail uri, which covers both the location and the date
+    private final LruCache<Uri, Extras> mCache = new LruCache<Uri, Extras>(MAX_ENTRIES);
+
+    // Only the latest selection's prefetch is worth running.  Main thread only.
+    private int mRequest;
+    private Future<?> mPrefetch;
+    // Bumped whenever the weather changes, so a load that was running at the time is discarded
+    private volatile int mGeneration;
+
+    // Main thread only
+    private int mHits;
+    private int mMisses;
+
+    private DetailPrefetcher(Context context) {
+        mContext = context;
+        mContext.getContentResolver().registerContentObserver(WeatherEntry.CONTENT_URI, true,
+                new ContentObserver(new Handler(Looper.getMainLooper())) {
+                    @Override
+                    public void onChange(boolean selfChange) {
+                        mGeneration++;
+                        mCache.evictAll();
+                    }
+                });
+    }
+
+    public static synchronized DetailPrefetcher get(Context context) {
+        if (null == sInstance) {
+            sInstance = new DetailPrefetcher(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return the cached extras for a detail uri, or null if they haven't been loaded
+     */
+    public Extras lookup(Uri detailUri) {
+        Extras extras = mCache.get(detailUri);
+        if (null == extras) {
+            mMisses++;
+        } else {
+            mHits++;
+        }
+        return extras;
+    }
+
+    /**
+     * Remembers extras that were loaded some other way, e.g. by {@link DetailFragment} itself.
+     */
+    public void put(Uri detailUri, Extras extras) {
+        mCache.put(detailUri, extras);
+    }
+
+    public int getHitCount() {
+        return mHits;
+    }
+
+    public int getMissCount() {
+        return mMisses;
+    }
+
+    /**
+     * Loads the days either side of {@code position} next time the main thread is idle.
+     * Must be called on the main thread.
+     */
+    public void prefetchAround(ForecastItem[] items, int position) {
+        if (0 == items.length || position < 0 || position >= items.length) {
+            return;
+        }
+        final int request = ++mRequest;
+        final String location = Utility.getPreferredLocation(mContext);
+        int start = Math.max(0, position - NEIGHBOURS);
+        int end = Math.min(items.length - 1, position + NEIGHBOURS);
+        final long firstDate = items[start].mDate;
+        final long lastDate = items[end].mDate;
+        final String[] artUrls = new String[end - start + 1];
+        for (int i = 0; i < artUrls.length; i++) {
+            artUrls[i] = items[start + i].mArtUrl;
+        }
+
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                // Another selection came along first
+                if (request == mRequest) {
+                    // Nor is an earlier one that hasn't started yet
+                    if (null != mPrefetch) {
+                        mPrefetch.cancel(false);
+                    }
+                    mPrefetch = BackgroundExecutor.submit(BackgroundExecutor.LANE_UI_VISIBLE,
+                            LOG_TAG, new Runnable() {
+                                @Override
+                                public void run() {
+                                    load(location, firstDate, lastDate);
+                                    loadArt(artUrls);
+                                }
+                            });
+                }
+                return false;
+            }
+        });
+    }
+
+    private void load(String location, long firstDate, long lastDate) {
+        int generation = mGeneration;
+        Cursor cursor = mContext.getContentResolver().query(
+                WeatherEntry.buildWeatherLocationWithStartDate(location, firstDate),
+                PREFETCH_COLUMNS, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        if (null == cursor) {
+            return;
+        }
+        try {
+            while (cursor.moveToNext() && cursor.getLong(COL_DATE) <= lastDate
+                    && generation == mGeneration) {
+                Uri detailUri = WeatherEntry.buildWeatherLocationWithDate(location,
+                        cursor.getLong(COL_DATE));
+                mCache.put(detailUri, new Extras(cursor.getFloat(COL_HUMIDITY),
+                        cursor.getFloat(COL_PRESSURE), cursor.getFloat(COL_WIND_SPEED),
+                        cursor.getFloat(COL_DEGREES)));
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /*
+        Pulls the art into Glide's disk cache, so the detail icon doesn't wait on the network.
+     */
+    private void loadArt(String[] artUrls) {
+        int size = mContext.getResources().getDimensionPixelSize(R.dimen.today_icon);
+        for (String artUrl : artUrls) {
+            if (null == artUrl) {
+                continue;
+            }
+            try {
+                Glide.with(mContext).load(artUrl).downloadOnly(size, size)
+                        .get(ART_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // Not worth more than a note, the detail view will just load it itself
+                Log.d(LOG_TAG, "Couldn't prefetch " + artUrl + ": " + e);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.os.Build;
 import android.os.Bundle;
+import android.support.v4.util.LongSparseArray;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.RecyclerView;
 import android.util.Log;
@@ -30,13 +31,16 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.data.WeatherContract;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+
+import java.util.List;
 
 /**
  * {@link ForecastAdapter} exposes a list of weather forecasts
  * from a {@link android.database.Cursor} to a {@link android.support.v7.widget.RecyclerView}.
  */
-public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder> {
+public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.ForecastAdapterViewHolder>
+        implements ItemChoiceManager.PositionIndex {
 
     private static final int VIEW_TYPE_TODAY = 0;
     private static final int VIEW_TYPE_FUTURE_DAY = 1;
@@ -45,6 +49,9 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
     private boolean mUseTodayLayout = true;
 
     private Cursor mCursor;
+    private ForecastItem[] mItems = new ForecastItem[0];
+    // Row positions keyed by date, which is also the row's stable id
+    private LongSparseArray<Integer> mPositions = new LongSparseArray<Integer>();
     final private Context mContext;
     final private ForecastAdapterOnClickHandler mClickHandler;
     final private View mEmptyView;
@@ -73,21 +80,26 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         @Override
         public void onClick(View v) {
             int adapterPosition = getAdapterPosition();
-            mCursor.moveToPosition(adapterPosition);
-            int dateColumnIndex = mCursor.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-            mClickHandler.onClick(mCursor.getLong(dateColumnIndex), this);
+            // The row is on its way out, e.g. animating away after an update
+            if (adapterPosition == RecyclerView.NO_POSITION) {
+                return;
+            }
+            // Hand over what we already know about the day, so the detail view can draw it now
+            mClickHandler.onClick(new ForecastSummary(mItems[adapterPosition]), this);
             mICM.onClick(this);
         }
     }
 
     public static interface ForecastAdapterOnClickHandler {
-        void onClick(Long date, ForecastAdapterViewHolder vh);
+        void onClick(ForecastSummary summary, ForecastAdapterViewHolder vh);
     }
 
     public ForecastAdapter(Context context, ForecastAdapterOnClickHandler dh, View emptyView, int choiceMode) {
         mContext = context;
         mClickHandler = dh;
         mEmptyView = emptyView;
+        // The date identifies a row across reloads, so selection can follow it
+        setHasStableIds(true);
         mICM = new ItemChoiceManager(this);
         mICM.setChoiceMode(choiceMode);
     }
@@ -122,67 +134,82 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         }
     }
 
+    /*
+        A partial rebind, after ForecastDiff found that only some parts of the row changed.
+        The payloads are ForecastDiff.PAYLOAD_ bits.
+     */
+    @Override
+    public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position,
+                                 List<Object> payloads) {
+        if ( payloads.isEmpty() ) {
+            onBindViewHolder(forecastAdapterViewHolder, position);
+            return;
+        }
+        int changed = 0;
+        for (Object payload : payloads) {
+            changed |= (Integer) payload;
+        }
+        bind(forecastAdapterViewHolder, position, changed);
+    }
+
     @Override
     public void onBindViewHolder(ForecastAdapterViewHolder forecastAdapterViewHolder, int position) {
-        mCursor.moveToPosition(position);
-        int weatherId = mCursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        bind(forecastAdapterViewHolder, position, ~0);
+        mICM.onBindViewHolder(forecastAdapterViewHolder, position);
+    }
+
+    private void bind(ForecastAdapterViewHolder forecastAdapterViewHolder, int position, int parts) {
+        // Everything was formatted when the rows were built, so only copy it into the views
+        ForecastItem item = mItems[position];
         int defaultImage;
-        boolean useLongToday;
+        String dateText;
 
         switch (getItemViewType(position)) {
             case VIEW_TYPE_TODAY:
-                defaultImage = Utility.getArtResourceForWeatherCondition(weatherId);
-                useLongToday = true;
+                defaultImage = item.mArtResource;
+                dateText = item.mLongDateText;
                 break;
             default:
-                defaultImage = Utility.getIconResourceForWeatherCondition(weatherId);
-                useLongToday = false;
-        }
-
-        if ( Utility.usingLocalGraphics(mContext) ) {
-            forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
-        } else {
-            Glide.with(mContext)
-                    .load(Utility.getArtUrlForWeatherCondition(mContext, weatherId))
-                    .error(defaultImage)
-                    .crossFade()
-                    .into(forecastAdapterViewHolder.mIconView);
+                defaultImage = item.mIconResource;
+                dateText = item.mDateText;
         }
 
-        // this enables better animations. even if we lose state due to a device rotation,
-        // the animator can use this to re-find the original view
-        ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, "iconView" + position);
-
-        // Read date from cursor
-        long dateInMillis = mCursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        if ( 0 != (parts & ForecastDiff.PAYLOAD_ICON) ) {
+            if ( null == item.mArtUrl ) {
+                forecastAdapterViewHolder.mIconView.setImageResource(defaultImage);
+            } else {
+                Glide.with(mContext)
+                        .load(item.mArtUrl)
+                        .error(defaultImage)
+                        .listener(ImageCacheStats.<String, GlideDrawable>listener(
+                                ImageCacheStats.SURFACE_LIST))
+                        .crossFade()
+                        .into(forecastAdapterViewHolder.mIconView);
+            }
 
-        // Find TextView and set formatted date on it
-        forecastAdapterViewHolder.mDateView.setText(Utility.getFriendlyDayString(mContext, dateInMillis, useLongToday));
+            ViewCompat.setTransitionName(forecastAdapterViewHolder.mIconView, item.mTransitionName);
+        }
 
-        // Read weather forecast from cursor
-        String description = Utility.getStringForWeatherCondition(mContext, weatherId);
+        if ( 0 != (parts & ForecastDiff.PAYLOAD_DATE) ) {
+            forecastAdapterViewHolder.mDateView.setText(dateText);
+        }
 
-        // Find TextView and set weather forecast on it
-        forecastAdapterViewHolder.mDescriptionView.setText(description);
-        forecastAdapterViewHolder.mDescriptionView.setContentDescription(mContext.getString(R.string.a11y_forecast, description));
+        if ( 0 != (parts & ForecastDiff.PAYLOAD_DESCRIPTION) ) {
+            forecastAdapterViewHolder.mDescriptionView.setText(item.mDescription);
+            forecastAdapterViewHolder.mDescriptionView.setContentDescription(item.mDescriptionA11y);
+        }
 
         // For accessibility, we don't want a content description for the icon field
         // because the information is repeated in the description view and the icon
         // is not individually selectable
 
-        // Read high temperature from cursor
-        double high = mCursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
-        String highString = Utility.formatTemperature(mContext, high);
-        forecastAdapterViewHolder.mHighTempView.setText(highString);
-        forecastAdapterViewHolder.mHighTempView.setContentDescription(mContext.getString(R.string.a11y_high_temp, highString));
+        if ( 0 != (parts & ForecastDiff.PAYLOAD_TEMPERATURE) ) {
+            forecastAdapterViewHolder.mHighTempView.setText(item.mHighText);
+            forecastAdapterViewHolder.mHighTempView.setContentDescription(item.mHighA11y);
 
-        // Read low temperature from cursor
-        double low = mCursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
-        String lowString = Utility.formatTemperature(mContext, low);
-        forecastAdapterViewHolder.mLowTempView.setText(lowString);
-        forecastAdapterViewHolder.mLowTempView.setContentDescription(mContext.getString(R.string.a11y_low_temp, lowString));
-
-        mICM.onBindViewHolder(forecastAdapterViewHolder, position);
+            forecastAdapterViewHolder.mLowTempView.setText(item.mLowText);
+            forecastAdapterViewHolder.mLowTempView.setContentDescription(item.mLowA11y);
+        }
     }
 
     public void onRestoreInstanceState(Bundle savedInstanceState) {
@@ -206,15 +233,47 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         return (position == 0 && mUseTodayLayout) ? VIEW_TYPE_TODAY : VIEW_TYPE_FUTURE_DAY;
     }
 
+    @Override
+    public long getItemId(int position) {
+        return mItems[position].mDate;
+    }
+
+    /**
+     * @return the position of the row for the given date, or RecyclerView.NO_POSITION
+     */
+    @Override
+    public int getPositionForId(long date) {
+        return mPositions.get(date, RecyclerView.NO_POSITION);
+    }
+
     @Override
     public int getItemCount() {
-        if ( null == mCursor ) return 0;
-        return mCursor.getCount();
+        return mItems.length;
     }
 
+    /**
+     * @param newCursor ideally a {@link ForecastLoader.ForecastCursor}, whose rows are already
+     *                  built.  The rows for any other cursor are built here, on the main thread.
+     */
     public void swapCursor(Cursor newCursor) {
         mCursor = newCursor;
-        notifyDataSetChanged();
+        ForecastItem[] oldItems = mItems;
+        ForecastDiff diff = null;
+        if ( newCursor instanceof ForecastLoader.ForecastCursor ) {
+            ForecastLoader.ForecastCursor forecast = (ForecastLoader.ForecastCursor) newCursor;
+            mItems = forecast.getItems();
+            mPositions = forecast.getPositions();
+            diff = forecast.getDiff();
+        } else {
+            mItems = ForecastItem.fromCursor(mContext, newCursor);
+            mPositions = ForecastItem.indexByDate(mItems);
+        }
+        if ( null != diff && diff.appliesTo(oldItems) ) {
+            // Only touch the rows that changed, leaving the others and their images alone
+            diff.dispatch(this);
+        } else {
+            notifyDataSetChanged();
+        }
         mEmptyView.setVisibility(getItemCount() == 0 ? View.VISIBLE : View.GONE);
     }
 
@@ -222,6 +281,10 @@ public class ForecastAdapter extends RecyclerView.Adapter<ForecastAdapter.Foreca
         return mCursor;
     }
 
+    ForecastItem[] getItems() {
+        return mItems;
+    }
+
     public void selectView(RecyclerView.ViewHolder viewHolder) {
         if ( viewHolder instanceof ForecastAdapterViewHolder ) {
             ForecastAdapterViewHolder vfh = (ForecastAdapterViewHolder)viewHolder;
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * The changes between two lists of {@link ForecastItem}s, as RecyclerView adapter
+ * notifications.
+ *
+ * Rows are matched up by date.  Both lists come from queries sorted by date, so a single merge
+ * pass finds every insert, remove and change.  A changed row carries a payload saying which
+ * parts of it changed, so the adapter can leave the rest of the row (and its image load) alone.
+ */
+final class ForecastDiff {
+
+    // Payload bits, see ForecastAdapter.onBindViewHolder
+    static final int PAYLOAD_DATE = 1;
+    static final int PAYLOAD_ICON = 1 << 1;
+    static final int PAYLOAD_DESCRIPTION = 1 << 2;
+    static final int PAYLOAD_TEMPERATURE = 1 << 3;
+    // The row needs binding from scratch, e.g. because it moved to or from the "today" slot
+    private static final int REBIND = -1;
+
+    private static final int OP_INSERT = 0;
+    private static final int OP_REMOVE = 1;
+    private static final int OP_CHANGE = 2;
+
+    private final ForecastItem[] mFrom;
+
+    // The notifications, in the order they must be sent
+    private int mOpCount;
+    private int[] mOpTypes;
+    private int[] mOpPositions;
+    private int[] mOpCounts;
+    private int[] mOpPayloads;
+
+    private ForecastDiff(ForecastItem[] from, int capacity) {
+        mFrom = from;
+        mOpTypes = new int[capacity];
+        mOpPositions = new int[capacity];
+        mOpCounts = new int[capacity];
+        mOpPayloads = new int[capacity];
+    }
+
+    /**
+     * @return the diff that turns {@code from} into {@code to}
+     */
+    static ForecastDiff compute(ForecastItem[] from, ForecastItem[] to) {
+        ForecastDiff diff = new ForecastDiff(from, from.length + to.length);
+        int oldIndex = 0;
+        int newIndex = 0;
+        // Where we are in the adapter's list, as the notifications so far have left it
+        int position = 0;
+        while (oldIndex < from.length || newIndex < to.length) {
+            if (newIndex == to.length
+                    || (oldIndex < from.length && from[oldIndex].mDate < to[newIndex].mDate)) {
+                diff.add(OP_REMOVE, position, 0);
+                oldIndex++;
+            } else if (oldIndex == from.length || to[newIndex].mDate < from[oldIndex].mDate) {
+                diff.add(OP_INSERT, position, 0);
+                newIndex++;
+                position++;
+            } else {
+                int payload = ((oldIndex == 0) != (newIndex == 0))
+                        ? REBIND : changes(from[oldIndex], to[newIndex]);
+                if (0 != payload) {
+                    diff.add(OP_CHANGE, position, payload);
+                }
+                oldIndex++;
+                newIndex++;
+                position++;
+            }
+        }
+        return diff;
+    }
+
+    /**
+     * @return the PAYLOAD_ bits for the parts of the row that differ
+     */
+    static int changes(ForecastItem a, ForecastItem b) {
+        int payload = 0;
+        if (!a.mDateText.equals(b.mDateText) || !a.mLongDateText.equals(b.mLongDateText)) {
+            payload |= PAYLOAD_DATE;
+        }
+        if (a.mWeatherId != b.mWeatherId || !equals(a.mArtUrl, b.mArtUrl)) {
+            payload |= PAYLOAD_ICON;
+        }
+        if (!a.mDescription.equals(b.mDescription)) {
+            payload |= PAYLOAD_DESCRIPTION;
+        }
+        if (!a.mHighText.equals(b.mHighText) || !a.mLowText.equals(b.mLowText)) {
+            payload |= PAYLOAD_TEMPERATURE;
+        }
+        return payload;
+    }
+
+    private static boolean equals(String a, String b) {
+        return (null == a) ? (null == b) : a.equals(b);
+    }
+
+    private void add(int type, int position, int payload) {
+        // Runs of inserts or removes go out as a single range
+        if (mOpCount > 0 && mOpTypes[mOpCount - 1] == type && type != OP_CHANGE) {
+            int last = mOpCount - 1;
+            if (type == OP_REMOVE && mOpPositions[last] == position) {
+                mOpCounts[last]++;
+                return;
+            }
+            if (type == OP_INSERT && mOpPositions[last] + mOpCounts[last] == position) {
+                mOpCounts[last]++;
+                return;
+            }
+        }
+        mOpTypes[mOpCount] = type;
+        mOpPositions[mOpCount] = position;
+        mOpCounts[mOpCount] = 1;
+        mOpPayloads[mOpCount] = payload;
+        mOpCount++;
+    }
+
+    /**
+     * @return true if this diff starts from exactly these items
+     */
+    boolean appliesTo(ForecastItem[] items) {
+        return items == mFrom;
+    }
+
+    int getOpCount() {
+        return mOpCount;
+    }
+
+    void dispatch(RecyclerView.Adapter adapter) {
+        for (int i = 0; i < mOpCount; i++) {
+            switch (mOpTypes[i]) {
+                case OP_INSERT:
+                    adapter.notifyItemRangeInserted(mOpPositions[i], mOpCounts[i]);
+                    break;
+                case OP_REMOVE:
+                    adapter.notifyItemRangeRemoved(mOpPositions[i], mOpCounts[i]);
+                    break;
+                case OP_CHANGE:
+                    if (mOpPayloads[i] == REBIND) {
+                        adapter.notifyItemChanged(mOpPositions[i]);
+                    } else {
+                        adapter.notifyItemChanged(mOpPositions[i], mOpPayloads[i]);
+                    }
+                    break;
+            }
+        }
+    }
+}
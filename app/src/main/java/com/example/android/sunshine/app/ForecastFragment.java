@@ -29,7 +29,6 @@ import android.preference.PreferenceManager;
 import android.support.design.widget.AppBarLayout;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
-import android.support.v4.content.CursorLoader;
 import android.support.v4.content.Loader;
 import android.support.v4.view.ViewCompat;
 import android.support.v7.widget.LinearLayoutManager;
@@ -46,6 +45,7 @@ import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
 import android.widget.TextView;
 
+import com.example.android.sunshine.app.data.ForecastSnapshot;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SendToWearService;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
@@ -61,6 +61,8 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     private int mChoiceMode;
     private boolean mHoldForTransition;
     private long mInitialSelectedDate = -1;
+    // True while the list is showing the snapshot from the last sync, before the loader delivers
+    private boolean mShowingSnapshot;
 
     private static final String SELECTED_KEY = "selected_position";
 
@@ -105,8 +107,11 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     public interface Callback {
         /**
          * DetailFragmentCallback for when an item has been selected.
+         *
+         * @param summary what the list shows for the day, for the detail view to start with
          */
-        public void onItemSelected(Uri dateUri, ForecastAdapter.ForecastAdapterViewHolder vh);
+        public void onItemSelected(Uri dateUri, ForecastSummary summary,
+                                   ForecastAdapter.ForecastAdapterViewHolder vh);
     }
 
     public ForecastFragment() {
@@ -204,11 +209,18 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         // use it to populate the RecyclerView it's attached to.
         mForecastAdapter = new ForecastAdapter(getActivity(), new ForecastAdapter.ForecastAdapterOnClickHandler() {
             @Override
-            public void onClick(Long date, ForecastAdapter.ForecastAdapterViewHolder vh) {
+            public void onClick(ForecastSummary summary, ForecastAdapter.ForecastAdapterViewHolder vh) {
+                if ( mChoiceMode == AbsListView.CHOICE_MODE_SINGLE ) {
+                    // The detail pane is next to us, and the user is likely to step to the
+                    // next or previous day from here
+                    DetailPrefetcher.get(getActivity()).prefetchAround(
+                            mForecastAdapter.getItems(), vh.getAdapterPosition());
+                }
                 String locationSetting = Utility.getPreferredLocation(getActivity());
                 ((Callback) getActivity())
                         .onItemSelected(WeatherContract.WeatherEntry.buildWeatherLocationWithDate(
-                                        locationSetting, date),
+                                        locationSetting, summary.mDate),
+                                summary,
                                 vh
                         );
             }
@@ -276,7 +288,25 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         if ( mHoldForTransition ) {
             getActivity().supportPostponeEnterTransition();
         }
-        getLoaderManager().initLoader(FORECAST_LOADER, null, this);
+        // On a cold start, draw the forecast from the last sync straight away rather than
+        // waiting on the database.  The loader's cursor replaces it when it arrives.  After a
+        // configuration change the retained loader already has a cursor, so skip the snapshot.
+        ForecastLoader.ForecastCursor snapshot = null;
+        if ( null == getLoaderManager().getLoader(FORECAST_LOADER) ) {
+            Cursor cursor = ForecastSnapshot.read(getActivity(),
+                    Utility.getPreferredLocation(getActivity()), FORECAST_COLUMNS);
+            if ( null != cursor && cursor.getCount() > 0 ) {
+                snapshot = ForecastLoader.wrap(getActivity(), cursor);
+                mForecastAdapter.swapCursor(snapshot);
+                mShowingSnapshot = true;
+                selectWhenLaidOut();
+            }
+        }
+        Loader<Cursor> loader = getLoaderManager().initLoader(FORECAST_LOADER, null, this);
+        if ( null != snapshot ) {
+            // so the database rows only update what changed since the snapshot was written
+            ((ForecastLoader) loader).setDiffBase(snapshot);
+        }
         super.onActivityCreated(savedInstanceState);
     }
 
@@ -333,7 +363,7 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
         Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
                 locationSetting, System.currentTimeMillis());
 
-        return new CursorLoader(getActivity(),
+        return new ForecastLoader(getActivity(),
                 weatherForLocationUri,
                 FORECAST_COLUMNS,
                 null,
@@ -345,51 +375,50 @@ public class ForecastFragment extends Fragment implements LoaderManager.LoaderCa
     public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
         mForecastAdapter.swapCursor(data);
         updateEmptyView();
+        // The snapshot already set up the selection and started the transition
+        boolean replacedSnapshot = mShowingSnapshot;
+        mShowingSnapshot = false;
         if ( data.getCount() == 0 ) {
             getActivity().supportStartPostponedEnterTransition();
-        } else {
-            mRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
-                @Override
-                public boolean onPreDraw() {
-                    // Since we know we're going to get items, we keep the listener around until
-                    // we see Children.
-                    if (mRecyclerView.getChildCount() > 0) {
-                        mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
-                        int position = mForecastAdapter.getSelectedItemPosition();
-                        if (position == RecyclerView.NO_POSITION &&
-                                -1 != mInitialSelectedDate) {
-                            Cursor data = mForecastAdapter.getCursor();
-                            int count = data.getCount();
-                            int dateColumn = data.getColumnIndex(WeatherContract.WeatherEntry.COLUMN_DATE);
-                            for ( int i = 0; i < count; i++ ) {
-                                data.moveToPosition(i);
-                                if ( data.getLong(dateColumn) == mInitialSelectedDate ) {
-                                    position = i;
-                                    break;
-                                }
-                            }
-                        }
-                        if (position == RecyclerView.NO_POSITION) position = 0;
-                        // If we don't need to restart the loader, and there's a desired position to restore
-                        // to, do so now.
-                        mRecyclerView.smoothScrollToPosition(position);
-                        RecyclerView.ViewHolder vh = mRecyclerView.findViewHolderForAdapterPosition(position);
-                        if (null != vh && mAutoSelectView) {
-                            mForecastAdapter.selectView(vh);
-                        }
-                        if ( mHoldForTransition ) {
-                            getActivity().supportStartPostponedEnterTransition();
-                        }
-                        return true;
-                    }
-                    return false;
-                }
-            });
+        } else if ( !replacedSnapshot ) {
+            selectWhenLaidOut();
         }
-
     }
 
-
+    /*
+        Once the list has children, scrolls to and selects the initial item and releases the
+        postponed enter transition.
+     */
+    private void selectWhenLaidOut() {
+        mRecyclerView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                // Since we know we're going to get items, we keep the listener around until
+                // we see Children.
+                if (mRecyclerView.getChildCount() > 0) {
+                    mRecyclerView.getViewTreeObserver().removeOnPreDrawListener(this);
+                    int position = mForecastAdapter.getSelectedItemPosition();
+                    if (position == RecyclerView.NO_POSITION &&
+                            -1 != mInitialSelectedDate) {
+                        position = mForecastAdapter.getPositionForId(mInitialSelectedDate);
+                    }
+                    if (position == RecyclerView.NO_POSITION) position = 0;
+                    // If we don't need to restart the loader, and there's a desired position to restore
+                    // to, do so now.
+                    mRecyclerView.smoothScrollToPosition(position);
+                    RecyclerView.ViewHolder vh = mRecyclerView.findViewHolderForAdapterPosition(position);
+                    if (null != vh && mAutoSelectView) {
+                        mForecastAdapter.selectView(vh);
+                    }
+                    if ( mHoldForTransition ) {
+                        getActivity().supportStartPostponedEnterTransition();
+                    }
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
 
     @Override
     public void onDestroy() {
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.support.v4.util.LongSparseArray;
+
+/**
+ * One row of the forecast list, with every string and resource the list item shows already
+ * worked out.  {@link ForecastAdapter} only has to copy these into its views.
+ *
+ * Rows are built by {@link ForecastLoader} on the loader thread, and never change afterwards.
+ */
+public final class ForecastItem {
+
+    public final long mDate;
+    public final int mWeatherId;
+    public final double mHigh;
+    public final double mLow;
+
+    // Used by the "today" layout
+    public final int mArtResource;
+    public final String mLongDateText;
+    // Used by every other row
+    public final int mIconResource;
+    public final String mDateText;
+
+    // null when the built in graphics are in use
+    public final String mArtUrl;
+    public final String mTransitionName;
+
+    public final String mDescription;
+    public final String mDescriptionA11y;
+    public final String mHighText;
+    public final String mHighA11y;
+    public final String mLowText;
+    public final String mLowA11y;
+
+    private ForecastItem(Context context, Cursor cursor) {
+        mDate = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        mWeatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        mHigh = cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP);
+        mLow = cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP);
+
+        mArtResource = Utility.getArtResourceForWeatherCondition(mWeatherId);
+        mLongDateText = Utility.getFriendlyDayString(context, mDate, true);
+        mIconResource = Utility.getIconResourceForWeatherCondition(mWeatherId);
+        mDateText = Utility.getFriendlyDayString(context, mDate, false);
+
+        mArtUrl = Utility.usingLocalGraphics(context)
+                ? null : Utility.getArtUrlForWeatherCondition(context, mWeatherId);
+        // this enables better animations. even if we lose state due to a device rotation,
+        // the animator can use this to re-find the original view.  It's keyed on the date
+        // rather than the position so a row keeps its name when the rows above it change.
+        mTransitionName = "iconView" + mDate;
+
+        mDescription = Utility.getStringForWeatherCondition(context, mWeatherId);
+        mDescriptionA11y = context.getString(R.string.a11y_forecast, mDescription);
+
+        mHighText = Utility.formatTemperature(context, mHigh);
+        mHighA11y = context.getString(R.string.a11y_high_temp, mHighText);
+        mLowText = Utility.formatTemperature(context, mLow);
+        mLowA11y = context.getString(R.string.a11y_low_temp, mLowText);
+    }
+
+    /**
+     * Builds a row for every position of a cursor with the {@link ForecastFragment} projection.
+     * Does all the formatting, so keep it off the main thread where possible.
+     */
+    public static ForecastItem[] fromCursor(Context context, Cursor cursor) {
+        if (null == cursor) {
+            return new ForecastItem[0];
+        }
+        ForecastItem[] items = new ForecastItem[cursor.getCount()];
+        for (int i = 0; i < items.length; i++) {
+            cursor.moveToPosition(i);
+            items[i] = new ForecastItem(context, cursor);
+        }
+        return items;
+    }
+
+    /**
+     * @return the position of each row, keyed by its date
+     */
+    public static LongSparseArray<Integer> indexByDate(ForecastItem[] items) {
+        LongSparseArray<Integer> positions = new LongSparseArray<Integer>(items.length);
+        for (int i = 0; i < items.length; i++) {
+            // The rows are sorted by date, so these all go on the end
+            positions.append(items[i].mDate, i);
+        }
+        return positions;
+    }
+}
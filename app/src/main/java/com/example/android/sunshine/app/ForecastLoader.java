@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+import android.support.v4.util.LongSparseArray;
+
+import com.example.android.sunshine.app.data.DayUtils;
+
+import java.util.Locale;
+
+/**
+ * A {@link CursorLoader} for the forecast list that also builds the {@link ForecastItem} rows
+ * on the loader thread, so the adapter has nothing left to format while scrolling.
+ *
+ * The rows depend on more than the database: the units and art pack, the locale, and which day
+ * is "today".  Units and art pack changes already notify the weather uri; the others are checked
+ * each time the loader is started, and force a reload when the rows are out of date.
+ */
+public class ForecastLoader extends CursorLoader {
+
+    private ForecastCursor mLastResult;
+    // The rows the adapter is showing, for working out what the next load changed.  Read on the
+    // loader thread.
+    private volatile ForecastItem[] mDiffBase;
+
+    /**
+     * The cursor delivered by {@link ForecastLoader}: the query result, plus its rows.
+     */
+    public static class ForecastCursor extends CursorWrapper {
+        private final ForecastItem[] mItems;
+        private final LongSparseArray<Integer> mPositions;
+        // How to get here from the previous rows, or null if there weren't any
+        private ForecastDiff mDiff;
+
+        // What the rows were built against
+        private final SettingsSnapshot mSettings;
+        private final Locale mLocale;
+        private final int mZoneGeneration;
+        private final int mJulianDay;
+
+        ForecastCursor(Context context, Cursor cursor) {
+            super(cursor);
+            // Note what the rows depend on before building them, so that a change part way
+            // through shows up as stale
+            mSettings = SettingsSnapshot.get(context);
+            mLocale = Locale.getDefault();
+            mZoneGeneration = DayUtils.getGeneration();
+            mJulianDay = DayUtils.getJulianDay(System.currentTimeMillis());
+            mItems = ForecastItem.fromCursor(context, cursor);
+            mPositions = ForecastItem.indexByDate(mItems);
+        }
+
+        public ForecastItem[] getItems() {
+            return mItems;
+        }
+
+        /**
+         * @return the position of each row, keyed by date
+         */
+        public LongSparseArray<Integer> getPositions() {
+            return mPositions;
+        }
+
+        ForecastDiff getDiff() {
+            return mDiff;
+        }
+
+        boolean isStale(Context context) {
+            return mSettings != SettingsSnapshot.get(context)
+                    || mLocale != Locale.getDefault()
+                    || mZoneGeneration != DayUtils.getGeneration()
+                    || mJulianDay != DayUtils.getJulianDay(System.currentTimeMillis());
+        }
+    }
+
+    public ForecastLoader(Context context, Uri uri, String[] projection, String selection,
+                          String[] selectionArgs, String sortOrder) {
+        super(context, uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    /**
+     * Wraps a cursor that didn't come from a loader, building its rows on the calling thread.
+     */
+    public static ForecastCursor wrap(Context context, Cursor cursor) {
+        return new ForecastCursor(context, cursor);
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = super.loadInBackground();
+        if (null == cursor) {
+            return null;
+        }
+        ForecastCursor result = new ForecastCursor(getContext(), cursor);
+        ForecastItem[] base = mDiffBase;
+        if (null != base) {
+            result.mDiff = ForecastDiff.compute(base, result.getItems());
+        }
+        return result;
+    }
+
+    /**
+     * Tells the loader what is on screen before its first result, such as the snapshot from the
+     * last sync, so that result can be applied as a diff too.
+     */
+    public void setDiffBase(ForecastCursor cursor) {
+        mDiffBase = cursor.getItems();
+    }
+
+    @Override
+    public void deliverResult(Cursor cursor) {
+        if (!isReset()) {
+            mLastResult = (ForecastCursor) cursor;
+            if (null != cursor) {
+                mDiffBase = mLastResult.getItems();
+            }
+        }
+        super.deliverResult(cursor);
+    }
+
+    @Override
+    protected void onStartLoading() {
+        super.onStartLoading();
+        if (null != mLastResult && mLastResult.isStale(getContext())) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onReset() {
+        super.onReset();
+        mLastResult = null;
+        mDiffBase = null;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * The part of a day's forecast that the list already has: enough for {@link DetailFragment} to
+ * draw its header straight away, while it loads humidity, pressure and wind.
+ */
+public class ForecastSummary implements Parcelable {
+
+    public final long mDate;
+    public final int mWeatherId;
+    public final double mHigh;
+    public final double mLow;
+
+    public ForecastSummary(long date, int weatherId, double high, double low) {
+        mDate = date;
+        mWeatherId = weatherId;
+        mHigh = high;
+        mLow = low;
+    }
+
+    public ForecastSummary(ForecastItem item) {
+        this(item.mDate, item.mWeatherId, item.mHigh, item.mLow);
+    }
+
+    private ForecastSummary(Parcel in) {
+        this(in.readLong(), in.readInt(), in.readDouble(), in.readDouble());
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(mDate);
+        dest.writeInt(mWeatherId);
+        dest.writeDouble(mHigh);
+        dest.writeDouble(mLow);
+    }
+
+    public static final Parcelable.Creator<ForecastSummary> CREATOR =
+            new Parcelable.Creator<ForecastSummary>() {
+                @Override
+                public ForecastSummary createFromParcel(Parcel in) {
+                    return new ForecastSummary(in);
+                }
+
+                @Override
+                public ForecastSummary[] newArray(int size) {
+                    return new ForecastSummary[size];
+                }
+            };
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Counts where the weather art each part of the app shows came from: Glide's memory cache, its
+ * disk cache, or the network.
+ *
+ * Glide tells a {@link RequestListener} whether an image came from memory, but not whether
+ * anything else came from disk.  {@link SunshineGlideModule} counts every network fetch by url,
+ * and a load that wasn't from memory is put down to the network if there's a fetch of its url
+ * that hasn't been claimed yet, or to the disk cache if not.
+ */
+public final class ImageCacheStats {
+
+    public static final int SURFACE_LIST = 0;
+    public static final int SURFACE_DETAIL = 1;
+    public static final int SURFACE_WIDGET = 2;
+    public static final int SURFACE_NOTIFICATION = 3;
+    public static final int SURFACE_PREFETCH = 4;
+    private static final int SURFACE_COUNT = 5;
+
+    public static final int SOURCE_MEMORY = 0;
+    public static final int SOURCE_DISK = 1;
+    public static final int SOURCE_NETWORK = 2;
+    private static final int SOURCE_COUNT = 3;
+
+    private static final String[] SURFACE_NAMES = {
+            "list", "detail", "widget", "notification", "prefetch"};
+
+    private static final AtomicIntegerArray sCounts =
+            new AtomicIntegerArray(SURFACE_COUNT * SOURCE_COUNT);
+
+    // Network fetches that no load has claimed yet, by url.  Guarded by itself.
+    private static final Map<String, Integer> sUnclaimedFetches = new HashMap<String, Integer>();
+
+    private static final StatsListener[] sListeners = new StatsListener[SURFACE_COUNT];
+
+    static {
+        for (int surface = 0; surface < SURFACE_COUNT; surface++) {
+            sListeners[surface] = new StatsListener(surface);
+        }
+    }
+
+    private static class StatsListener implements RequestListener<Object, Object> {
+        private final int mSurface;
+
+        StatsListener(int surface) {
+            mSurface = surface;
+        }
+
+        @Override
+        public boolean onException(Exception e, Object model, Target<Object> target,
+                                   boolean isFirstResource) {
+            // Let Glide go on to the error drawable
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(Object resource, Object model, Target<Object> target,
+                                       boolean isFromMemoryCache, boolean isFirstResource) {
+            int source;
+            if (isFromMemoryCache) {
+                source = SOURCE_MEMORY;
+            } else if (claimFetch(String.valueOf(model))) {
+                source = SOURCE_NETWORK;
+            } else {
+                source = SOURCE_DISK;
+            }
+            sCounts.incrementAndGet(mSurface * SOURCE_COUNT + source);
+            return false;
+        }
+    }
+
+    private ImageCacheStats() {
+    }
+
+    /**
+     * @return a listener to pass to Glide's {@code listener()} for loads shown on a surface
+     */
+    @SuppressWarnings("unchecked")
+    public static <M, R> RequestListener<M, R> listener(int surface) {
+        return (RequestListener<M, R>) (RequestListener<?, ?>) sListeners[surface];
+    }
+
+    /**
+     * Called by {@link SunshineGlideModule} each time an image has to be fetched from the network.
+     */
+    static void onNetworkFetch(String url) {
+        synchronized (sUnclaimedFetches) {
+            Integer count = sUnclaimedFetches.get(url);
+            sUnclaimedFetches.put(url, null == count ? 1 : count + 1);
+        }
+    }
+
+    private static boolean claimFetch(String url) {
+        synchronized (sUnclaimedFetches) {
+            Integer count = sUnclaimedFetches.get(url);
+            if (null == count) {
+                return false;
+            }
+            if (count == 1) {
+                sUnclaimedFetches.remove(url);
+            } else {
+                sUnclaimedFetches.put(url, count - 1);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return how many images shown on the surface came from the source
+     */
+    public static int getCount(int surface, int source) {
+        return sCounts.get(surface * SOURCE_COUNT + source);
+    }
+
+    /**
+     * @return the fraction of the surface's images that came from memory, or 0 if none yet
+     */
+    public static float getMemoryHitRate(int surface) {
+        int memory = getCount(surface, SOURCE_MEMORY);
+        int total = memory + getCount(surface, SOURCE_DISK) + getCount(surface, SOURCE_NETWORK);
+        return 0 == total ? 0f : (float) memory / total;
+    }
+
+    /**
+     * @return a one line summary of every surface's counts, for logging
+     */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (int surface = 0; surface < SURFACE_COUNT; surface++) {
+            if (surface > 0) {
+                sb.append(", ");
+            }
+            sb.append(SURFACE_NAMES[surface]).append(' ')
+                    .append(getCount(surface, SOURCE_MEMORY)).append('/')
+                    .append(getCount(surface, SOURCE_DISK)).append('/')
+                    .append(getCount(surface, SOURCE_NETWORK));
+        }
+        return sb.append(" (memory/disk/network)").toString();
+    }
+}
@@ -28,10 +28,23 @@ import android.widget.AbsListView;
 import android.widget.Checkable;
 
 /**
- * The ItemChoiceManager class keeps track of which positions have been selected.  Note that it
- * doesn't take advantage of new adapter features to track changes in the underlying data.
+ * The ItemChoiceManager class keeps track of which positions have been selected.  When the
+ * adapter has stable ids, the selection follows its item across data changes; adapters that
+ * implement {@link PositionIndex} let it do that without searching.
  */
 public class ItemChoiceManager {
+
+    /**
+     * Implemented by adapters with stable ids that can find the position for an id directly,
+     * so that checked items can be found again after a data change without searching for them.
+     */
+    public interface PositionIndex {
+        /**
+         * @return the position of the item with this id, or RecyclerView.NO_POSITION
+         */
+        int getPositionForId(long id);
+    }
+
     private final String LOG_TAG = MainActivity.class.getSimpleName();
     private final String SELECTED_ITEMS_KEY = "SIK";
     private int mChoiceMode;
@@ -44,6 +57,24 @@ public class ItemChoiceManager {
             if (mAdapter != null && mAdapter.hasStableIds())
                 confirmCheckedPositionsById(mAdapter.getItemCount());
         }
+
+        @Override
+        public void onItemRangeInserted(int positionStart, int itemCount) {
+            if (mAdapter.hasStableIds()) {
+                confirmCheckedPositionsById(mAdapter.getItemCount());
+            } else {
+                shiftCheckedPositions(positionStart, itemCount);
+            }
+        }
+
+        @Override
+        public void onItemRangeRemoved(int positionStart, int itemCount) {
+            if (mAdapter.hasStableIds()) {
+                confirmCheckedPositionsById(mAdapter.getItemCount());
+            } else {
+                shiftCheckedPositions(positionStart, -itemCount);
+            }
+        }
     };
 
     private ItemChoiceManager() {
@@ -53,6 +84,7 @@ public class ItemChoiceManager {
 
     public ItemChoiceManager(RecyclerView.Adapter adapter) {
         mAdapter = adapter;
+        mAdapter.registerAdapterDataObserver(mAdapterDataObserver);
     }
 
     /**
@@ -154,6 +186,34 @@ public class ItemChoiceManager {
         mCheckedIdStates.clear();
     }
 
+    /*
+        Keeps the checked positions on the same items when items are inserted (delta > 0) or
+        removed (delta < 0) at positionStart.  A checked item that was removed is unchecked.
+     */
+    void shiftCheckedPositions(int positionStart, int delta) {
+        SparseBooleanArray shifted = new SparseBooleanArray();
+        for (int i = 0; i < mCheckStates.size(); i++) {
+            int position = mCheckStates.keyAt(i);
+            if (position < positionStart) {
+                shifted.put(position, mCheckStates.valueAt(i));
+            } else if (delta > 0 || position >= positionStart - delta) {
+                shifted.put(position + delta, mCheckStates.valueAt(i));
+            }
+        }
+        mCheckStates = shifted;
+
+        for (int i = mCheckedIdStates.size() - 1; i >= 0; i--) {
+            int position = mCheckedIdStates.valueAt(i);
+            if (position < positionStart) {
+                continue;
+            } else if (delta > 0 || position >= positionStart - delta) {
+                mCheckedIdStates.setValueAt(i, position + delta);
+            } else {
+                mCheckedIdStates.removeAt(i);
+            }
+        }
+    }
+
     void confirmCheckedPositionsById(int oldItemCount) {
         // Clear out the positional check states, we'll rebuild it below from IDs.
         mCheckStates.clear();
@@ -162,30 +222,37 @@ public class ItemChoiceManager {
             final long id = mCheckedIdStates.keyAt(checkedIndex);
             final int lastPos = mCheckedIdStates.valueAt(checkedIndex);
 
-            final long lastPosId = mAdapter.getItemId(lastPos);
-            if (id != lastPosId) {
-                // Look around to see if the ID is nearby. If not, uncheck it.
-                final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
-                final int end = Math.min(lastPos + CHECK_POSITION_SEARCH_DISTANCE, oldItemCount);
-                boolean found = false;
-                for (int searchPos = start; searchPos < end; searchPos++) {
-                    final long searchId = mAdapter.getItemId(searchPos);
-                    if (id == searchId) {
-                        found = true;
-                        mCheckStates.put(searchPos, true);
-                        mCheckedIdStates.setValueAt(checkedIndex, searchPos);
-                        break;
-                    }
-                }
-
-                if (!found) {
-                    mCheckedIdStates.delete(id);
-                    checkedIndex--;
-                }
+            final int position = findPositionForId(id, lastPos, oldItemCount);
+            if (position == RecyclerView.NO_POSITION) {
+                mCheckedIdStates.delete(id);
+                checkedIndex--;
             } else {
-                mCheckStates.put(lastPos, true);
+                mCheckStates.put(position, true);
+                mCheckedIdStates.setValueAt(checkedIndex, position);
+            }
+        }
+    }
+
+    /*
+        Where the item with the given id is now, or NO_POSITION if it's gone.
+     */
+    private int findPositionForId(long id, int lastPos, int itemCount) {
+        if (mAdapter instanceof PositionIndex) {
+            return ((PositionIndex) mAdapter).getPositionForId(id);
+        }
+
+        if (lastPos < itemCount && id == mAdapter.getItemId(lastPos)) {
+            return lastPos;
+        }
+        // Look around to see if the ID is nearby. If not, uncheck it.
+        final int start = Math.max(0, lastPos - CHECK_POSITION_SEARCH_DISTANCE);
+        final int end = Math.min(lastPos + CHECK_POSITION_SEARCH_DISTANCE, itemCount);
+        for (int searchPos = start; searchPos < end; searchPos++) {
+            if (id == mAdapter.getItemId(searchPos)) {
+                return searchPos;
             }
         }
+        return RecyclerView.NO_POSITION;
     }
 
     public void onBindViewHolder(RecyclerView.ViewHolder vh, int position) {
@@ -151,13 +151,15 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
     }
 
     @Override
-    public void onItemSelected(Uri contentUri, ForecastAdapter.ForecastAdapterViewHolder vh) {
+    public void onItemSelected(Uri contentUri, ForecastSummary summary,
+                               ForecastAdapter.ForecastAdapterViewHolder vh) {
         if (mTwoPane) {
             // In two-pane mode, show the detail view in this activity by
             // adding or replacing the detail fragment using a
             // fragment transaction.
             Bundle args = new Bundle();
             args.putParcelable(DetailFragment.DETAIL_URI, contentUri);
+            args.putParcelable(DetailFragment.DETAIL_SUMMARY, summary);
 
             DetailFragment fragment = new DetailFragment();
             fragment.setArguments(args);
@@ -167,7 +169,8 @@ public class MainActivity extends AppCompatActivity implements ForecastFragment.
                     .commit();
         } else {
             Intent intent = new Intent(this, DetailActivity.class)
-                    .setData(contentUri);
+                    .setData(contentUri)
+                    .putExtra(DetailFragment.DETAIL_SUMMARY, summary);
 
             ActivityOptionsCompat activityOptions =
                     ActivityOptionsCompat.makeSceneTransitionAnimation(this,
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+import com.example.android.sunshine.common.WeatherConditions;
+
+import java.util.Locale;
+
+/**
+ * An immutable copy of the user settings that the display code reads on every bind: location,
+ * units and art pack.
+ *
+ * The current snapshot is published through a volatile field, so any thread can read it without
+ * locking.  It's only rebuilt when one of those preferences actually changes.
+ */
+public final class SettingsSnapshot {
+
+    private static volatile SettingsSnapshot sCurrent;
+
+    // SharedPreferences only holds its listeners weakly, so keep ours alive here
+    private static SharedPreferences.OnSharedPreferenceChangeListener sListener;
+
+    private final String mLocation;
+    private final boolean mMetric;
+    private final boolean mLocalGraphics;
+    // Art pack url for each WeatherConditions category, null where there is no art
+    private final String[] mArtUrls;
+
+    private SettingsSnapshot(Context context, SharedPreferences prefs) {
+        mLocation = prefs.getString(context.getString(R.string.pref_location_key),
+                context.getString(R.string.pref_location_default));
+
+        String metric = context.getString(R.string.pref_units_metric);
+        mMetric = prefs.getString(context.getString(R.string.pref_units_key), metric)
+                .equals(metric);
+
+        String sunshineArtPack = context.getString(R.string.pref_art_pack_sunshine);
+        String formatArtUrl = prefs.getString(context.getString(R.string.pref_art_pack_key),
+                sunshineArtPack);
+        mLocalGraphics = formatArtUrl.equals(sunshineArtPack);
+
+        mArtUrls = new String[WeatherConditions.CATEGORY_COUNT];
+        for (int category = 0; category < WeatherConditions.CATEGORY_COUNT; category++) {
+            String slug = WeatherConditions.getArtSlug(category);
+            if (null != slug) {
+                mArtUrls[category] = String.format(Locale.US, formatArtUrl, slug);
+            }
+        }
+    }
+
+    /**
+     * @return the current settings, read from the default SharedPreferences the first time
+     */
+    public static SettingsSnapshot get(Context context) {
+        SettingsSnapshot snapshot = sCurrent;
+        if (null == snapshot) {
+            snapshot = init(context.getApplicationContext());
+        }
+        return snapshot;
+    }
+
+    private static synchronized SettingsSnapshot init(final Context appContext) {
+        if (null != sCurrent) {
+            return sCurrent;
+        }
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(appContext);
+        final String locationKey = appContext.getString(R.string.pref_location_key);
+        final String unitsKey = appContext.getString(R.string.pref_units_key);
+        final String artPackKey = appContext.getString(R.string.pref_art_pack_key);
+
+        sListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences prefs, String key) {
+                // The sync adapter writes status and last-update keys all the time, ignore those
+                if (locationKey.equals(key) || unitsKey.equals(key) || artPackKey.equals(key)) {
+                    sCurrent = new SettingsSnapshot(appContext, prefs);
+                }
+            }
+        };
+        prefs.registerOnSharedPreferenceChangeListener(sListener);
+
+        sCurrent = new SettingsSnapshot(appContext, prefs);
+        return sCurrent;
+    }
+
+    public String getLocation() {
+        return mLocation;
+    }
+
+    public boolean isMetric() {
+        return mMetric;
+    }
+
+    public boolean usingLocalGraphics() {
+        return mLocalGraphics;
+    }
+
+    /**
+     * @param category one of the WeatherConditions categories
+     * @return the art pack url for it, or null if there is no art for the category
+     */
+    public String getArtUrl(int category) {
+        return mArtUrls[category];
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.DiskLruCacheWrapper;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.model.GenericLoaderFactory;
+import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.stream.HttpUrlGlideUrlLoader;
+import com.bumptech.glide.module.GlideModule;
+import com.example.android.sunshine.common.WeatherConditions;
+
+import java.io.File;
+import java.io.InputStream;
+
+/**
+ * Sizes Glide's caches for what Sunshine actually shows: one piece of art per weather condition,
+ * at a few sizes.  Glide's defaults are meant for apps full of photos.
+ *
+ * Also counts network fetches for {@link ImageCacheStats}.  Registered in the manifest.
+ */
+public class SunshineGlideModule implements GlideModule {
+
+    private static final String LOG_TAG = SunshineGlideModule.class.getSimpleName();
+
+    private static final String DISK_CACHE_DIR = "image_manager_disk_cache";
+    // Every art pack image at every size is well under this
+    private static final int DISK_CACHE_BYTES = 10 * 1024 * 1024;
+
+    // Sizes the art is shown at, see ArtPrefetcher
+    private static final int SIZES_PER_IMAGE = 4;
+
+    @Override
+    public void applyOptions(Context context, GlideBuilder builder) {
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryClassBytes = activityManager.getMemoryClass() * 1024 * 1024;
+
+        // The largest bitmap we normally decode is the today/detail art
+        int artSize = context.getResources().getDimensionPixelSize(R.dimen.today_icon);
+        int artBytes = artSize * artSize * 4;
+
+        // Every condition's art at every size, but never more than 1/16 of the heap
+        int memoryCacheBytes = Math.min(memoryClassBytes / 16,
+                artBytes * WeatherConditions.CATEGORY_COUNT * SIZES_PER_IMAGE);
+        // Enough to recycle the bitmaps for a screen's worth of art
+        int bitmapPoolBytes = Math.min(memoryClassBytes / 32,
+                artBytes * WeatherConditions.CATEGORY_COUNT);
+
+        Log.d(LOG_TAG, "Memory cache " + memoryCacheBytes + " bytes, bitmap pool "
+                + bitmapPoolBytes + " bytes");
+        builder.setMemoryCache(new LruResourceCache(memoryCacheBytes));
+        builder.setBitmapPool(new LruBitmapPool(bitmapPoolBytes));
+        builder.setDiskCache(DiskLruCacheWrapper.get(
+                new File(context.getCacheDir(), DISK_CACHE_DIR), DISK_CACHE_BYTES));
+    }
+
+    @Override
+    public void registerComponents(Context context, Glide glide) {
+        glide.register(GlideUrl.class, InputStream.class,
+                new ModelLoaderFactory<GlideUrl, InputStream>() {
+                    @Override
+                    public ModelLoader<GlideUrl, InputStream> build(Context context,
+                                                                    GenericLoaderFactory factories) {
+                        return new CountingUrlLoader(new HttpUrlGlideUrlLoader());
+                    }
+
+                    @Override
+                    public void teardown() {
+                    }
+                });
+    }
+
+    /*
+        Glide's own url loader, noting every fetch it makes.  Glide only gets this far when
+        neither of its caches has the image.
+     */
+    private static class CountingUrlLoader implements ModelLoader<GlideUrl, InputStream> {
+        private final ModelLoader<GlideUrl, InputStream> mLoader;
+
+        CountingUrlLoader(ModelLoader<GlideUrl, InputStream> loader) {
+            mLoader = loader;
+        }
+
+        @Override
+        public DataFetcher<InputStream> getResourceFetcher(final GlideUrl model, int width,
+                                                           int height) {
+            final DataFetcher<InputStream> fetcher = mLoader.getResourceFetcher(model, width, height);
+            return new DataFetcher<InputStream>() {
+                @Override
+                public InputStream loadData(Priority priority) throws Exception {
+                    ImageCacheStats.onNetworkFetch(model.toString());
+                    return fetcher.loadData(priority);
+                }
+
+                @Override
+                public void cleanup() {
+                    fetcher.cleanup();
+                }
+
+                @Override
+                public String getId() {
+                    return fetcher.getId();
+                }
+
+                @Override
+                public void cancel() {
+                    fetcher.cancel();
+                }
+            };
+        }
+    }
+}
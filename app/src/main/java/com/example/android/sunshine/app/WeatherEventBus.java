@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Carries events between parts of the app running in the same process, without the round trip
+ * through the system that a broadcast or a startService takes.
+ *
+ * Events are delivered by type, on the handler each subscriber asked for.  The latest event of
+ * each type is kept, so something that starts up after it was posted can still see it with
+ * {@link #getSticky}.  Nothing here takes a lock: posting only reads copy-on-write lists.
+ *
+ * Whoever posts falls back to a broadcast when {@link #post} says nobody is listening.  Both
+ * paths' delivery times are recorded with {@link #recordLatency}.
+ */
+public final class WeatherEventBus {
+
+    private static final String LOG_TAG = WeatherEventBus.class.getSimpleName();
+
+    public static final int PATH_BUS = 0;
+    public static final int PATH_BROADCAST = 1;
+    private static final int PATH_COUNT = 2;
+
+    public interface Subscriber<E> {
+        void onEvent(E event);
+    }
+
+    private static class Registration<E> {
+        final Handler mHandler;
+        final Subscriber<? super E> mSubscriber;
+
+        Registration(Handler handler, Subscriber<? super E> subscriber) {
+            mHandler = handler;
+            mSubscriber = subscriber;
+        }
+    }
+
+    private static final ConcurrentMap<Class<?>, CopyOnWriteArrayList<Registration<?>>>
+            sSubscribers = new ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<Registration<?>>>();
+    private static final ConcurrentMap<Class<?>, Object> sSticky =
+            new ConcurrentHashMap<Class<?>, Object>();
+
+    // Total milliseconds then count, for each path
+    private static final AtomicLongArray sLatencies = new AtomicLongArray(PATH_COUNT * 2);
+
+    private WeatherEventBus() {
+    }
+
+    private static CopyOnWriteArrayList<Registration<?>> getRegistrations(Class<?> type) {
+        CopyOnWriteArrayList<Registration<?>> registrations = sSubscribers.get(type);
+        if (null == registrations) {
+            sSubscribers.putIfAbsent(type, new CopyOnWriteArrayList<Registration<?>>());
+            registrations = sSubscribers.get(type);
+        }
+        return registrations;
+    }
+
+    /**
+     * Delivers every later event of a type to the subscriber, on the handler's thread.
+     */
+    public static <E> void subscribe(Class<E> type, Handler handler,
+                                     Subscriber<? super E> subscriber) {
+        getRegistrations(type).add(new Registration<E>(handler, subscriber));
+    }
+
+    public static <E> void unsubscribe(Class<E> type, Subscriber<? super E> subscriber) {
+        for (Registration<?> registration : getRegistrations(type)) {
+            if (registration.mSubscriber == subscriber) {
+                getRegistrations(type).remove(registration);
+            }
+        }
+    }
+
+    /**
+     * Keeps the event as its type's latest and hands it to the type's subscribers.
+     *
+     * @return how many subscribers it went to, 0 if the caller needs another way to deliver it
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> int post(final E event) {
+        Class<?> type = event.getClass();
+        sSticky.put(type, event);
+
+        final long postedAt = SystemClock.elapsedRealtime();
+        int delivered = 0;
+        for (Registration<?> registration : getRegistrations(type)) {
+            final Registration<E> typed = (Registration<E>) registration;
+            typed.mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    recordLatency(PATH_BUS, postedAt);
+                    typed.mSubscriber.onEvent(event);
+                }
+            });
+            delivered++;
+        }
+        return delivered;
+    }
+
+    /**
+     * @return the latest event of a type that was posted, or null if none has been
+     */
+    public static <E> E getSticky(Class<E> type) {
+        return type.cast(sSticky.get(type));
+    }
+
+    /**
+     * Notes how long an event took to arrive.
+     *
+     * @param path PATH_BUS or PATH_BROADCAST
+     * @param sentAt {@link SystemClock#elapsedRealtime()} when it was sent
+     */
+    public static void recordLatency(int path, long sentAt) {
+        long latency = SystemClock.elapsedRealtime() - sentAt;
+        sLatencies.addAndGet(path * 2, latency);
+        long count = sLatencies.incrementAndGet(path * 2 + 1);
+        Log.d(LOG_TAG, (path == PATH_BUS ? "Bus" : "Broadcast") + " delivery took " + latency
+                + "ms, " + getAverageLatencyMillis(path) + "ms average over " + count);
+    }
+
+    /**
+     * @return the average delivery time on a path, or -1 if nothing has been delivered on it
+     */
+    public static long getAverageLatencyMillis(int path) {
+        long count = sLatencies.get(path * 2 + 1);
+        return 0 == count ? -1 : sLatencies.get(path * 2) / count;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import java.util.TimeZone;
+
+/**
+ * Julian day and day boundary arithmetic for the default time zone.
+ *
+ * This gives the same answers as the android.text.format.Time based code it replaces, but
+ * without allocating a Time for every call.  The offset of the default zone is cached for one
+ * UTC day at a time, so the common case (many dates falling in the same few days) is a couple of
+ * comparisons and a division.
+ */
+public final class DayUtils {
+
+    public static final long DAY_IN_MILLIS = 1000L * 60 * 60 * 24;
+
+    // Julian day of the Unix epoch, same value as Time.EPOCH_JULIAN_DAY
+    public static final int EPOCH_JULIAN_DAY = 2440588;
+
+    /**
+     * A span of UTC time over which the zone offset is known to be constant.  The snapshot is
+     * immutable and swapped as a whole, so readers never see a half updated cache.  It belongs to
+     * the generation its zone was read in, and is ignored once that generation has passed.
+     */
+    private static final class OffsetSpan {
+        final int generation;
+        final long start;
+        final long end;
+        final int offsetMillis;
+
+        OffsetSpan(int generation, long start, long end, int offsetMillis) {
+            this.generation = generation;
+            this.start = start;
+            this.end = end;
+            this.offsetMillis = offsetMillis;
+        }
+    }
+
+    private static volatile TimeZone sZone;
+    private static volatile OffsetSpan sSpan;
+    // Bumped on every invalidate(), so other caches that depend on the zone can tell it changed
+    private static volatile int sGeneration;
+
+    private DayUtils() {
+    }
+
+    /**
+     * Drops the cached zone and offsets.  Must be called when the default time zone changes.
+     */
+    public static void invalidate() {
+        // Bump first, so a reader that caches the old zone after this can tell it's stale
+        sGeneration++;
+        sZone = null;
+        sSpan = null;
+    }
+
+    /**
+     * @return a number that changes every time the cached zone is invalidated
+     */
+    public static int getGeneration() {
+        return sGeneration;
+    }
+
+    /* The default zone as of the given generation */
+    private static TimeZone getZone(int generation) {
+        TimeZone zone = sZone;
+        if (zone == null) {
+            // TimeZone.getDefault() hands back a copy, so only do it when the cache is empty
+            zone = TimeZone.getDefault();
+            sZone = zone;
+            if (generation != sGeneration) {
+                // invalidate() ran meanwhile, and may have been undone by the line above
+                sZone = null;
+            }
+        }
+        return zone;
+    }
+
+    /**
+     * @param millis a UTC instant
+     * @return the offset from UTC of the default time zone at that instant, in milliseconds
+     */
+    public static int getOffsetMillis(long millis) {
+        int generation = sGeneration;
+        OffsetSpan span = sSpan;
+        if (span != null && span.generation == generation
+                && millis >= span.start && millis < span.end) {
+            return span.offsetMillis;
+        }
+        TimeZone zone = getZone(generation);
+        int offset = zone.getOffset(millis);
+
+        // Cache the UTC day containing this instant if the offset doesn't change during it.
+        // Zones never change offset twice within a day, so equal ends means a constant offset.
+        long dayStart = (millis / DAY_IN_MILLIS) * DAY_IN_MILLIS;
+        if (millis < 0 && dayStart != millis) {
+            dayStart -= DAY_IN_MILLIS;
+        }
+        long dayEnd = dayStart + DAY_IN_MILLIS;
+        if (zone.getOffset(dayStart) == zone.getOffset(dayEnd - 1)) {
+            sSpan = new OffsetSpan(generation, dayStart, dayEnd, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Same as Time.getJulianDay(millis, gmtoff).
+     *
+     * @param millis a UTC instant
+     * @param gmtoffSeconds the offset from UTC to use, in seconds
+     * @return the Julian day containing the instant at that offset
+     */
+    public static int getJulianDay(long millis, long gmtoffSeconds) {
+        long offsetMillis = gmtoffSeconds * 1000;
+        long julianDay = (millis + offsetMillis) / DAY_IN_MILLIS;
+        return (int) julianDay + EPOCH_JULIAN_DAY;
+    }
+
+    /**
+     * @param millis a UTC instant
+     * @return the Julian day containing the instant in the default time zone
+     */
+    public static int getJulianDay(long millis) {
+        return getJulianDay(millis, getOffsetMillis(millis) / 1000);
+    }
+
+    /**
+     * Same as Time.setJulianDay(julianDay) on a Time in the default time zone.
+     *
+     * @param julianDay the Julian day
+     * @return the UTC instant of local midnight at the start of that day
+     */
+    public static long getDayStart(int julianDay) {
+        long utcMidnight = (julianDay - EPOCH_JULIAN_DAY) * DAY_IN_MILLIS;
+        // First guess with the offset at UTC midnight, then correct it with the offset in force
+        // at the guessed instant in case a transition falls between the two.
+        long guess = utcMidnight - getOffsetMillis(utcMidnight);
+        return utcMidnight - getOffsetMillis(guess);
+    }
+
+    /**
+     * @param millis a UTC instant
+     * @return the UTC instant of local midnight at the start of the day containing millis
+     */
+    public static long normalizeDate(long millis) {
+        return getDayStart(getJulianDay(millis));
+    }
+}
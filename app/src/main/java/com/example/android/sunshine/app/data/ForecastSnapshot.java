@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A small binary copy of the preferred location's forecast, written by the sync adapter after
+ * every successful sync.
+ *
+ * On a cold start the forecast list reads this through a memory mapped file and shows it straight
+ * away, without waiting for the database to be opened and the forecast join to run.  The live
+ * cursor from the loader replaces it as soon as it arrives.
+ *
+ * Layout (big endian, strings are an int byte count followed by UTF-8):
+ * <pre>
+ *   int magic, int version
+ *   string location_setting, double coord_lat, double coord_long
+ *   int count
+ *   count x { long _id, long date, int weather_id, double max, double min, string short_desc }
+ * </pre>
+ */
+public final class ForecastSnapshot {
+
+    private static final String LOG_TAG = ForecastSnapshot.class.getSimpleName();
+
+    private static final String FILE_NAME = "forecast_snapshot.bin";
+
+    private static final int MAGIC = 0x53534e50; // "SSNP"
+    // Bump this whenever the layout changes; older files are then simply ignored
+    private static final int VERSION = 1;
+
+    // Nobody needs more than two weeks of forecast on the first frame
+    private static final int MAX_ROWS = 14;
+
+    // What the sync adapter reads back out of the provider to write the snapshot
+    private static final String[] COLUMNS = {
+            WeatherContract.WeatherEntry.TABLE_NAME + "." + WeatherContract.WeatherEntry._ID,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.LocationEntry.COLUMN_COORD_LAT,
+            WeatherContract.LocationEntry.COLUMN_COORD_LONG
+    };
+    private static final int COL_ID = 0;
+    private static final int COL_DATE = 1;
+    private static final int COL_WEATHER_ID = 2;
+    private static final int COL_MAX = 3;
+    private static final int COL_MIN = 4;
+    private static final int COL_DESC = 5;
+    private static final int COL_LAT = 6;
+    private static final int COL_LONG = 7;
+    // location_setting lives in the header rather than in COLUMNS, but the reader can return it
+    private static final int COL_LOCATION_SETTING = 8;
+
+    private ForecastSnapshot() {
+    }
+
+    private static File getFile(Context context) {
+        return new File(context.getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * Throws the snapshot away, e.g. because the tables it was written from were replaced.
+     */
+    public static void delete(Context context) {
+        getFile(context).delete();
+    }
+
+    /**
+     * Reads the current forecast for a location out of the provider and replaces the snapshot
+     * with it.  Call this from a background thread after the weather table has been updated.
+     */
+    public static void write(Context context, String locationSetting) {
+        Uri uri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
+                locationSetting, System.currentTimeMillis());
+        Cursor cursor = context.getContentResolver().query(uri, COLUMNS, null, null,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        if (cursor == null) {
+            return;
+        }
+
+        File file = getFile(context);
+        // Write to a temporary file and rename it over the old one, so a reader only ever sees a
+        // complete snapshot
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            int count = Math.min(cursor.getCount(), MAX_ROWS);
+            double lat = 0;
+            double lon = 0;
+            if (cursor.moveToFirst()) {
+                lat = cursor.getDouble(COL_LAT);
+                lon = cursor.getDouble(COL_LONG);
+            }
+
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, locationSetting);
+            out.writeDouble(lat);
+            out.writeDouble(lon);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                cursor.moveToPosition(i);
+                out.writeLong(cursor.getLong(COL_ID));
+                out.writeLong(cursor.getLong(COL_DATE));
+                out.writeInt(cursor.getInt(COL_WEATHER_ID));
+                out.writeDouble(cursor.getDouble(COL_MAX));
+                out.writeDouble(cursor.getDouble(COL_MIN));
+                writeString(out, cursor.getString(COL_DESC));
+            }
+            out.close();
+            out = null;
+
+            if (!tmp.renameTo(file)) {
+                Log.w(LOG_TAG, "Couldn't replace forecast snapshot");
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Error writing forecast snapshot", e);
+            tmp.delete();
+        } finally {
+            cursor.close();
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // nothing more we can do
+                }
+                tmp.delete();
+            }
+        }
+    }
+
+    /**
+     * Maps the snapshot and builds a cursor over it.
+     *
+     * @param locationSetting only a snapshot written for this location is returned
+     * @param projection column names, in the same form as a query against the provider's
+     *                   weather-with-location uri.  Columns the snapshot doesn't hold come back
+     *                   as null.
+     * @return the forecast from today onwards, or null if there is no usable snapshot
+     */
+    public static Cursor read(Context context, String locationSetting, String[] projection) {
+        File file = getFile(context);
+        if (!file.exists()) {
+            return null;
+        }
+
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            String snapshotLocation = readString(buffer);
+            if (!snapshotLocation.equals(locationSetting)) {
+                return null;
+            }
+            double lat = buffer.getDouble();
+            double lon = buffer.getDouble();
+            int count = buffer.getInt();
+            if (count < 0 || count > MAX_ROWS) {
+                return null;
+            }
+
+            // Same filter as the live query: nothing before today
+            long today = WeatherContract.normalizeDate(System.currentTimeMillis());
+
+            int[] fields = mapProjection(projection);
+            MatrixCursor cursor = new MatrixCursor(projection, count);
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                long date = buffer.getLong();
+                int weatherId = buffer.getInt();
+                double max = buffer.getDouble();
+                double min = buffer.getDouble();
+                String desc = readString(buffer);
+                if (date < today) {
+                    continue;
+                }
+
+                Object[] row = new Object[projection.length];
+                for (int c = 0; c < fields.length; c++) {
+                    switch (fields[c]) {
+                        case COL_ID: row[c] = id; break;
+                        case COL_DATE: row[c] = date; break;
+                        case COL_WEATHER_ID: row[c] = weatherId; break;
+                        case COL_MAX: row[c] = max; break;
+                        case COL_MIN: row[c] = min; break;
+                        case COL_DESC: row[c] = desc; break;
+                        case COL_LAT: row[c] = lat; break;
+                        case COL_LONG: row[c] = lon; break;
+                        case COL_LOCATION_SETTING: row[c] = snapshotLocation; break;
+                        default: row[c] = null;
+                    }
+                }
+                cursor.addRow(row);
+            }
+            return cursor;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // A missing, short or garbled file just means we wait for the database as before
+            Log.w(LOG_TAG, "Ignoring unreadable forecast snapshot", e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // nothing more we can do
+                }
+            }
+        }
+    }
+
+    private static int[] mapProjection(String[] projection) {
+        int[] fields = new int[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            String name = stripTable(projection[i]);
+            if (name.equals(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING)) {
+                fields[i] = COL_LOCATION_SETTING;
+                continue;
+            }
+            fields[i] = -1;
+            for (int c = 0; c < COLUMNS.length; c++) {
+                if (stripTable(COLUMNS[c]).equals(name)) {
+                    fields[i] = c;
+                    break;
+                }
+            }
+        }
+        return fields;
+    }
+
+    // weather._id -> _id
+    private static String stripTable(String column) {
+        return column.substring(column.lastIndexOf('.') + 1);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) throws UnsupportedEncodingException {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process wide map from location setting to the _ID of its row in the location table.
+ *
+ * The provider is the only writer: it records ids as locations are inserted or looked up and
+ * clears the map whenever the location table is updated, deleted from or recreated.  The sync
+ * adapter reads it so that a steady state sync doesn't have to go to the provider at all to
+ * find its location.
+ */
+public final class LocationIdCache {
+
+    public static final long NO_ID = -1;
+
+    private static final ConcurrentHashMap<String, Long> sIds = new ConcurrentHashMap<String, Long>();
+
+    private LocationIdCache() {
+    }
+
+    /**
+     * @param locationSetting the location setting, as stored in the location table
+     * @return the cached row id, or NO_ID if it isn't known
+     */
+    public static long get(String locationSetting) {
+        if (locationSetting == null) return NO_ID;
+        Long id = sIds.get(locationSetting);
+        return id == null ? NO_ID : id;
+    }
+
+    static void put(String locationSetting, long id) {
+        if (locationSetting != null && id > 0) {
+            sIds.put(locationSetting, id);
+        }
+    }
+
+    static void clear() {
+        sIds.clear();
+    }
+}
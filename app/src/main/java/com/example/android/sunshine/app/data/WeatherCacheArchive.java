@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Streams the location and weather tables to and from a compact binary archive, so a cache can
+ * be carried to a new install instead of being rebuilt by one network sync per location.
+ *
+ * Layout (big endian, strings in DataOutput's modified UTF-8):
+ * <pre>
+ *   int magic, int version
+ *   int locationCount
+ *   locationCount x { long _id, string location_setting, string city_name,
+ *                     double coord_lat, double coord_long }
+ *   int weatherCount
+ *   weatherCount x { long location_id, long date, int weather_id, string short_desc,
+ *                    double min, double max, double humidity, double pressure,
+ *                    double wind, double degrees }
+ *   long crc32 of everything above
+ * </pre>
+ */
+public final class WeatherCacheArchive {
+
+    private static final int MAGIC = 0x53574341; // "SWCA"
+    private static final int VERSION = 1;
+
+    private static final String[] LOCATION_COLUMNS = {
+            LocationEntry._ID,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            LocationEntry.COLUMN_CITY_NAME,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+
+    private static final String[] WEATHER_COLUMNS = {
+            WeatherEntry.COLUMN_LOC_KEY,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES
+    };
+
+    private WeatherCacheArchive() {
+    }
+
+    /**
+     * Writes both tables to out.  The stream is flushed but not closed.
+     *
+     * @return the number of rows written, locations and weather together
+     */
+    public static int export(SQLiteDatabase db, OutputStream out) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(
+                new BufferedOutputStream(out), new CRC32());
+        DataOutputStream data = new DataOutputStream(checked);
+        int rows = 0;
+
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+
+        // Read both tables in one transaction so a sync can't change them half way through
+        db.beginTransaction();
+        try {
+            Cursor cursor = db.query(LocationEntry.TABLE_NAME, LOCATION_COLUMNS,
+                    null, null, null, null, null);
+            try {
+                data.writeInt(cursor.getCount());
+                while (cursor.moveToNext()) {
+                    data.writeLong(cursor.getLong(0));
+                    data.writeUTF(cursor.getString(1));
+                    data.writeUTF(cursor.getString(2));
+                    data.writeDouble(cursor.getDouble(3));
+                    data.writeDouble(cursor.getDouble(4));
+                    rows++;
+                }
+            } finally {
+                cursor.close();
+            }
+
+            cursor = db.query(WeatherEntry.TABLE_NAME, WEATHER_COLUMNS,
+                    null, null, null, null, null);
+            try {
+                data.writeInt(cursor.getCount());
+                while (cursor.moveToNext()) {
+                    data.writeLong(cursor.getLong(0));
+                    data.writeLong(cursor.getLong(1));
+                    data.writeInt(cursor.getInt(2));
+                    data.writeUTF(cursor.getString(3));
+                    for (int c = 4; c < WEATHER_COLUMNS.length; c++) {
+                        data.writeDouble(cursor.getDouble(c));
+                    }
+                    rows++;
+                }
+            } finally {
+                cursor.close();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Take the checksum before writing it, the trailer covers everything but itself
+        long crc = checked.getChecksum().getValue();
+        data.writeLong(crc);
+        data.flush();
+        return rows;
+    }
+
+    /**
+     * Replaces the contents of both tables with an archive written by {@link #export}.  Everything
+     * happens in one transaction, which is only committed once the checksum has been verified,
+     * so a bad archive leaves the database exactly as it was.
+     *
+     * @return the number of rows restored, locations and weather together
+     * @throws IOException if the archive is truncated, corrupt or from an unknown version
+     */
+    public static int restore(SQLiteDatabase db, InputStream in) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(in), new CRC32());
+        DataInputStream data = new DataInputStream(checked);
+        int rows = 0;
+
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a weather cache archive");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported weather cache archive version " + version);
+        }
+
+        db.beginTransaction();
+        try {
+            db.delete(WeatherEntry.TABLE_NAME, null, null);
+            db.delete(LocationEntry.TABLE_NAME, null, null);
+
+            // Compiled statements avoid building a ContentValues per row
+            SQLiteStatement insertLocation = db.compileStatement(
+                    buildInsert(LocationEntry.TABLE_NAME, LOCATION_COLUMNS));
+            try {
+                int count = readCount(data);
+                for (int i = 0; i < count; i++) {
+                    insertLocation.bindLong(1, data.readLong());
+                    insertLocation.bindString(2, data.readUTF());
+                    insertLocation.bindString(3, data.readUTF());
+                    insertLocation.bindDouble(4, data.readDouble());
+                    insertLocation.bindDouble(5, data.readDouble());
+                    insertLocation.executeInsert();
+                    rows++;
+                }
+            } finally {
+                insertLocation.close();
+            }
+
+            SQLiteStatement insertWeather = db.compileStatement(
+                    buildInsert(WeatherEntry.TABLE_NAME, WEATHER_COLUMNS));
+            try {
+                int count = readCount(data);
+                for (int i = 0; i < count; i++) {
+                    insertWeather.bindLong(1, data.readLong());
+                    insertWeather.bindLong(2, data.readLong());
+                    insertWeather.bindLong(3, data.readInt());
+                    insertWeather.bindString(4, data.readUTF());
+                    for (int c = 5; c <= WEATHER_COLUMNS.length; c++) {
+                        insertWeather.bindDouble(c, data.readDouble());
+                    }
+                    insertWeather.executeInsert();
+                    rows++;
+                }
+            } finally {
+                insertWeather.close();
+            }
+
+            long expected = checked.getChecksum().getValue();
+            long actual = data.readLong();
+            if (expected != actual) {
+                throw new IOException("Weather cache archive checksum mismatch");
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        // Whatever was cached refers to the rows we just replaced
+        LocationIdCache.clear();
+        return rows;
+    }
+
+    private static int readCount(DataInputStream data) throws IOException {
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("Bad row count " + count);
+        }
+        return count;
+    }
+
+    private static String buildInsert(String table, String[] columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "" : ",").append(columns[i]);
+        }
+        sql.append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(')').toString();
+    }
+}
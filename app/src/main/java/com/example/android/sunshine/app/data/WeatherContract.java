@@ -19,7 +19,6 @@ import android.content.ContentResolver;
 import android.content.ContentUris;
 import android.net.Uri;
 import android.provider.BaseColumns;
-import android.text.format.Time;
 
 /**
  * Defines table and column names for the weather database.
@@ -44,14 +43,18 @@ public class WeatherContract {
     public static final String PATH_WEATHER = "weather";
     public static final String PATH_LOCATION = "location";
 
+    // Methods for ContentResolver.call() on the provider, which copy the whole cache to or from
+    // a WeatherCacheArchive file.  The arg is the absolute path of the file, and the result
+    // holds the number of rows copied under EXTRA_ROW_COUNT.
+    public static final String METHOD_EXPORT_CACHE = "exportCache";
+    public static final String METHOD_IMPORT_CACHE = "importCache";
+    public static final String EXTRA_ROW_COUNT = "rowCount";
+
     // To make it easy to query for the exact date, we normalize all dates that go into
     // the database to the start of the the Julian day at UTC.
     public static long normalizeDate(long startDate) {
         // normalize the start date to the beginning of the (UTC) day
-        Time time = new Time();
-        time.set(startDate);
-        int julianDay = Time.getJulianDay(startDate, time.gmtoff);
-        return time.setJulianDay(julianDay);
+        return DayUtils.normalizeDate(startDate);
     }
 
     /* Inner class that defines the table contents of the location table */
@@ -23,9 +23,17 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 
 public class WeatherProvider extends ContentProvider {
 
+    private static final String LOG_TAG = WeatherProvider.class.getSimpleName();
+
     // The URI Matcher used by this content provider.
     private static final UriMatcher sUriMatcher = buildUriMatcher();
     private WeatherDbHelper mOpenHelper;
@@ -35,7 +43,8 @@ public class WeatherProvider extends ContentProvider {
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
 
-    private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
+    // Package private, along with the selections below, so the query plan tests can check them
+    static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
     static{
         sWeatherByLocationSettingQueryBuilder = new SQLiteQueryBuilder();
@@ -52,22 +61,26 @@ public class WeatherProvider extends ContentProvider {
     }
 
     //location.location_setting = ?
-    private static final String sLocationSettingSelection =
+    static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
 
     //location.location_setting = ? AND date >= ?
-    private static final String sLocationSettingWithStartDateSelection =
+    static final String sLocationSettingWithStartDateSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
 
     //location.location_setting = ? AND date = ?
-    private static final String sLocationSettingAndDaySelection =
+    static final String sLocationSettingAndDaySelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //location_setting = ? , against the location table alone
+    static final String sLocationIdSelection =
+            WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ?";
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
@@ -241,11 +254,35 @@ public class WeatherProvider extends ContentProvider {
                 break;
             }
             case LOCATION: {
-                long _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+                // Inserting a location is an insert-or-get: location_setting is UNIQUE, so if a
+                // row for the setting already exists we hand back its _ID rather than failing.
+                // The lookup and the insert share a transaction, so two syncs racing to add the
+                // same location both end up with the same row.
+                String locationSetting =
+                        values.getAsString(WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING);
+                long _id = -1;
+                boolean inserted = false;
+                db.beginTransaction();
+                try {
+                    if (locationSetting != null) {
+                        _id = getLocationId(db, locationSetting);
+                    }
+                    if (_id == -1) {
+                        _id = db.insert(WeatherContract.LocationEntry.TABLE_NAME, null, values);
+                        inserted = true;
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
                 if ( _id > 0 )
                     returnUri = WeatherContract.LocationEntry.buildLocationUri(_id);
                 else
                     throw new android.database.SQLException("Failed to insert row into " + uri);
+                LocationIdCache.put(locationSetting, _id);
+                // Nothing changed if we found an existing row, so nobody needs to requery
+                if (!inserted)
+                    return returnUri;
                 break;
             }
             default:
@@ -255,6 +292,19 @@ public class WeatherProvider extends ContentProvider {
         return returnUri;
     }
 
+    private static long getLocationId(SQLiteDatabase db, String locationSetting) {
+        Cursor cursor = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                new String[]{WeatherContract.LocationEntry._ID},
+                sLocationIdSelection,
+                new String[]{locationSetting},
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
     @Override
     public int delete(Uri uri, String selection, String[] selectionArgs) {
         final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
@@ -270,6 +320,7 @@ public class WeatherProvider extends ContentProvider {
             case LOCATION:
                 rowsDeleted = db.delete(
                         WeatherContract.LocationEntry.TABLE_NAME, selection, selectionArgs);
+                LocationIdCache.clear();
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -305,6 +356,8 @@ public class WeatherProvider extends ContentProvider {
             case LOCATION:
                 rowsUpdated = db.update(WeatherContract.LocationEntry.TABLE_NAME, values, selection,
                         selectionArgs);
+                // An update can change a row's location_setting, so forget everything we knew
+                LocationIdCache.clear();
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
@@ -342,6 +395,50 @@ public class WeatherProvider extends ContentProvider {
         }
     }
 
+    @Override
+    @TargetApi(11)
+    public Bundle call(String method, String arg, Bundle extras) {
+        final boolean export = WeatherContract.METHOD_EXPORT_CACHE.equals(method);
+        if (!export && !WeatherContract.METHOD_IMPORT_CACHE.equals(method)) {
+            return super.call(method, arg, extras);
+        }
+        if (null == arg) {
+            throw new IllegalArgumentException("No archive file given for " + method);
+        }
+
+        int rows;
+        try {
+            if (export) {
+                FileOutputStream out = new FileOutputStream(arg);
+                try {
+                    rows = WeatherCacheArchive.export(mOpenHelper.getReadableDatabase(), out);
+                } finally {
+                    out.close();
+                }
+            } else {
+                FileInputStream in = new FileInputStream(arg);
+                try {
+                    rows = WeatherCacheArchive.restore(mOpenHelper.getWritableDatabase(), in);
+                } finally {
+                    in.close();
+                }
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Failed to " + method + " " + arg, e);
+            throw new android.database.SQLException("Failed to " + method + ": " + e.getMessage());
+        }
+
+        if (!export) {
+            // The snapshot is read before the provider, so it mustn't outlive the old rows
+            ForecastSnapshot.delete(getContext());
+            getContext().getContentResolver().notifyChange(WeatherContract.LocationEntry.CONTENT_URI, null);
+            getContext().getContentResolver().notifyChange(WeatherContract.WeatherEntry.CONTENT_URI, null);
+        }
+        Bundle result = new Bundle();
+        result.putInt(WeatherContract.EXTRA_ROW_COUNT, rows);
+        return result;
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
@@ -15,24 +15,25 @@
  */
 package com.example.android.sunshine.app.gcm;
 
-import android.app.IntentService;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import android.widget.Toast;
 
+import com.example.android.sunshine.app.BackgroundExecutor;
+import com.example.android.sunshine.app.BackgroundService;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.google.android.gms.gcm.GoogleCloudMessaging;
 import com.google.android.gms.iid.InstanceID;
 
 
-public class RegistrationIntentService extends IntentService {
+public class RegistrationIntentService extends BackgroundService {
     private static final String TAG = "RegIntentService";
 
     public RegistrationIntentService() {
-        super(TAG);
+        super(TAG, BackgroundExecutor.LANE_MAINTENANCE);
     }
 
     @Override
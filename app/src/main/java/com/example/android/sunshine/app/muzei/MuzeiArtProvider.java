@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.muzei;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.support.annotation.NonNull;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Serves screen sized copies of the Muzei artwork, so that Muzei loads a few hundred kilobytes
+ * from us rather than the multi-megabyte originals from Wikimedia.
+ *
+ * {@link WeatherMuzeiSource} downloads and scales each piece of art once with {@link #prepare},
+ * and publishes the uri that returns.  Muzei runs in its own process, so this is exported, but
+ * it only ever hands out those files, read only.
+ */
+public class MuzeiArtProvider extends ContentProvider {
+
+    private static final String LOG_TAG = MuzeiArtProvider.class.getSimpleName();
+
+    public static final String AUTHORITY = "com.example.android.sunshine.app.muzei";
+
+    private static final String ART_DIR = "muzei_art";
+    private static final String MIME_TYPE = "image/jpeg";
+    private static final int JPEG_QUALITY = 90;
+    private static final long DOWNLOAD_TIMEOUT_SECONDS = 60;
+
+    // Art names are a slug and a hash, so anything else in a uri is refused
+    private static final Pattern ART_NAME = Pattern.compile("[a-z_]+-[0-9a-f]{8}");
+
+    /* Enough to cover the screen whichever way up it is; Muzei does its own cropping */
+    private static int getArtSize(Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return Math.max(metrics.widthPixels, metrics.heightPixels);
+    }
+
+    /*
+     * The art key, then a hash of where the art came from and the size it was scaled to, so a
+     * new url or screen size never gets an old file
+     */
+    private static String getArtName(String artKey, String imageUrl, int size) {
+        return artKey + '-' + String.format(Locale.US, "%08x", (imageUrl + '@' + size).hashCode());
+    }
+
+    private static File getArtFile(Context context, String artName) {
+        return new File(new File(context.getCacheDir(), ART_DIR), artName + ".jpg");
+    }
+
+    private static Uri buildArtUri(String artName) {
+        return new Uri.Builder().scheme("content").authority(AUTHORITY)
+                .appendPath(artName + ".jpg").build();
+    }
+
+    /**
+     * @return the uri {@link #prepare} returns for this art when it succeeds
+     */
+    static Uri buildArtUri(Context context, String artKey, String imageUrl) {
+        return buildArtUri(getArtName(artKey, imageUrl, getArtSize(context)));
+    }
+
+    /* Removes the copies of an art key's art other than the current one */
+    private static void deleteOtherCopies(File current, String artKey) {
+        File[] files = current.getParentFile().listFiles();
+        if (null == files) {
+            return;
+        }
+        for (File file : files) {
+            if (!file.equals(current) && file.getName().startsWith(artKey + '-')) {
+                // Muzei keeps reading one it has open even once it's deleted
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Makes sure there's a screen sized copy of {@code imageUrl} to serve as {@code artKey},
+     * downloading it if there isn't.  Blocks, so call it from a background thread.
+     *
+     * @return the uri to publish, or null if the art couldn't be downloaded
+     */
+    static Uri prepare(Context context, String artKey, String imageUrl) {
+        int size = getArtSize(context);
+        String artName = getArtName(artKey, imageUrl, size);
+        File file = getArtFile(context, artName);
+        if (file.exists()) {
+            return buildArtUri(artName);
+        }
+
+        FutureTarget<Bitmap> future = Glide.with(context)
+                .load(imageUrl)
+                .asBitmap()
+                .into(size, size);
+        File tmp = new File(file.getPath() + ".tmp");
+        OutputStream out = null;
+        try {
+            Bitmap bitmap = future.get(DOWNLOAD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            file.getParentFile().mkdirs();
+            out = new BufferedOutputStream(new FileOutputStream(tmp));
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) {
+                throw new IOException("Couldn't compress " + imageUrl);
+            }
+            out.close();
+            out = null;
+            // Muzei may be reading the old copy, so only ever replace a complete file
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Couldn't rename " + tmp);
+            }
+            deleteOtherCopies(file, artKey);
+            return buildArtUri(artName);
+        } catch (Exception e) {
+            Log.w(LOG_TAG, "Couldn't prepare Muzei art from " + imageUrl, e);
+            tmp.delete();
+            return null;
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // nothing more we can do
+                }
+                tmp.delete();
+            }
+            Glide.clear(future);
+        }
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return MIME_TYPE;
+    }
+
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode)
+            throws FileNotFoundException {
+        if (!"r".equals(mode)) {
+            throw new SecurityException("Read only: " + uri);
+        }
+        String name = uri.getLastPathSegment();
+        if (null == name || !name.endsWith(".jpg")
+                || !ART_NAME.matcher(name.substring(0, name.length() - 4)).matches()) {
+            throw new FileNotFoundException("Unknown artwork: " + uri);
+        }
+        File file = getArtFile(getContext(), name.substring(0, name.length() - 4));
+        return ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+    }
+
+    @Override
+    public Cursor query(@NonNull Uri uri, String[] projection, String selection,
+                        String[] selectionArgs, String sortOrder) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(@NonNull Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Read only: " + uri);
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read only: " + uri);
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, ContentValues values, String selection,
+                      String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read only: " + uri);
+    }
+}
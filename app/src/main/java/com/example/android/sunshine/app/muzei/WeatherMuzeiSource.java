@@ -21,13 +21,20 @@ import android.net.Uri;
 
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.app.sync.TodayForecast;
+import com.example.android.sunshine.common.WeatherConditions;
 import com.google.android.apps.muzei.api.Artwork;
 import com.google.android.apps.muzei.api.MuzeiArtSource;
 
 /**
  * Muzei source that changes your background based on the current weather conditions
+ *
+ * The artwork's token is the art it shows, so a data update that doesn't change the art or the
+ * location publishes nothing.  The images themselves are served at screen size by
+ * {@link MuzeiArtProvider}.
  */
 public class WeatherMuzeiSource extends MuzeiArtSource {
     private static final String[] FORECAST_COLUMNS = new String[]{
@@ -38,6 +45,13 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
     private static final int INDEX_WEATHER_ID = 0;
     private static final int INDEX_SHORT_DESC = 1;
 
+    // Tornados share the storm category but have their own picture
+    private static final int WEATHER_ID_TORNADO = 781;
+    private static final String ART_KEY_TORNADO = "tornado";
+
+    // The forecast the sync sent with the update being handled, if it sent one
+    private TodayForecast mToday;
+
     public WeatherMuzeiSource() {
         super("WeatherMuzeiSource");
     }
@@ -48,32 +62,93 @@ public class WeatherMuzeiSource extends MuzeiArtSource {
         boolean dataUpdated = intent != null &&
                 SunshineSyncAdapter.ACTION_DATA_UPDATED.equals(intent.getAction());
         if (dataUpdated && isEnabled()) {
-            onUpdate(UPDATE_REASON_OTHER);
+            // Only for this update, onUpdate is also called by Muzei on its own
+            mToday = TodayForecast.getLatest(intent, Utility.getPreferredLocation(this));
+            try {
+                onUpdate(UPDATE_REASON_OTHER);
+            } finally {
+                mToday = null;
+            }
         }
     }
 
     @Override
     protected void onUpdate(int reason) {
         String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
-        Cursor cursor = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (cursor.moveToFirst()) {
-            int weatherId = cursor.getInt(INDEX_WEATHER_ID);
-            String desc = cursor.getString(INDEX_SHORT_DESC);
-
-            String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
-            // Only publish a new wallpaper if we have a valid image
-            if (imageUrl != null) {
-                publishArtwork(new Artwork.Builder()
-                        .imageUri(Uri.parse(imageUrl))
-                        .title(desc)
-                        .byline(location)
-                        .viewIntent(new Intent(this, MainActivity.class))
-                        .build());
+        int weatherId;
+        String desc;
+        // Straight from the sync, or else from its latest update in this process
+        TodayForecast today = mToday != null ? mToday : TodayForecast.getLatest(null, location);
+        if (today != null) {
+            weatherId = today.mWeatherId;
+            desc = today.mDescription;
+        } else {
+            Cursor cursor = queryToday(location);
+            if (cursor == null) {
+                return;
             }
+            weatherId = cursor.getInt(INDEX_WEATHER_ID);
+            desc = cursor.getString(INDEX_SHORT_DESC);
+            cursor.close();
+        }
+
+        String imageUrl = Utility.getImageUrlForWeatherCondition(weatherId);
+        // Only publish a new wallpaper if we have a valid image
+        if (imageUrl == null) {
+            return;
+        }
+        String artKey = getArtKey(weatherId);
+
+        // Muzei asking for art, rather than our data changing, always gets it
+        Artwork current = getCurrentArtwork();
+        if (reason == UPDATE_REASON_OTHER && current != null
+                && artKey.equals(current.getToken()) && location.equals(current.getByline())
+                && MuzeiArtProvider.buildArtUri(this, artKey, imageUrl)
+                        .equals(current.getImageUri())) {
+            return;
+        }
+
+        Uri imageUri = MuzeiArtProvider.prepare(this, artKey, imageUrl);
+        if (imageUri == null) {
+            // Muzei can still fetch the original itself
+            imageUri = Uri.parse(imageUrl);
+        }
+        publishArtwork(new Artwork.Builder()
+                .imageUri(imageUri)
+                .token(artKey)
+                .title(desc)
+                .byline(location)
+                .viewIntent(new Intent(this, MainActivity.class))
+                .build());
+    }
+
+    /*
+        Today's row, from the sync's snapshot if it has it, otherwise from the ContentProvider.
+        Null if there isn't one.
+     */
+    private Cursor queryToday(String location) {
+        Cursor cursor = ForecastSnapshot.read(this, location, FORECAST_COLUMNS);
+        if (cursor != null && cursor.getCount() == 0) {
+            cursor.close();
+            cursor = null;
+        }
+        if (cursor == null) {
+            Uri weatherForLocationUri = WeatherContract.WeatherEntry
+                    .buildWeatherLocationWithStartDate(location, System.currentTimeMillis());
+            cursor = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
+                    null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        }
+        if (cursor != null && !cursor.moveToFirst()) {
+            cursor.close();
+            cursor = null;
+        }
+        return cursor;
+    }
+
+    private static String getArtKey(int weatherId) {
+        if (weatherId == WEATHER_ID_TORNADO) {
+            return ART_KEY_TORNADO;
         }
-        cursor.close();
+        return WeatherConditions.getArtSlug(WeatherConditions.getCategory(weatherId));
     }
 }
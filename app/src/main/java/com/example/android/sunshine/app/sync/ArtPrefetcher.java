@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.resource.drawable.GlideDrawable;
+import com.bumptech.glide.request.FutureTarget;
+import com.example.android.sunshine.app.BackgroundExecutor;
+import com.example.android.sunshine.app.ImageCacheStats;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.SettingsSnapshot;
+import com.example.android.sunshine.app.widget.RemoteViewsBitmapBudget;
+import com.example.android.sunshine.common.WeatherConditions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches the art for a freshly synced forecast into Glide's caches, so that the list, the detail
+ * widget and the notification don't each go to the network for it the first time they're shown.
+ *
+ * Each distinct art url is loaded once at every size it's shown at.  The loads run one at a time
+ * in the {@link BackgroundExecutor}'s maintenance lane, after the sync has finished with the
+ * database.  The notification's icons go into {@link NotificationIconCache} rather than Glide's
+ * caches.
+ */
+public class ArtPrefetcher {
+
+    private static final String LOG_TAG = ArtPrefetcher.class.getSimpleName();
+
+    // Don't let one slow image hold up the rest
+    private static final long TIMEOUT_SECONDS = 15;
+
+    private ArtPrefetcher() {
+    }
+
+    /**
+     * @return the width and height Glide is asked for when loading the notification's large icon
+     */
+    @SuppressLint("InlinedApi")
+    static int[] getNotificationLargeIconSize(Resources resources) {
+        // On Honeycomb and higher devices, we can retrieve the size of the large icon
+        // Prior to that, we use a fixed size
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            return new int[] {
+                    resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_width),
+                    resources.getDimensionPixelSize(android.R.dimen.notification_large_icon_height)};
+        }
+        int size = resources.getDimensionPixelSize(R.dimen.notification_large_icon_default);
+        return new int[] {size, size};
+    }
+
+    /**
+     * Queues the art for the given weather condition ids.  Does nothing if the built in
+     * graphics are in use.
+     */
+    public static void prefetch(Context context, int[] weatherIds) {
+        SettingsSnapshot settings = SettingsSnapshot.get(context);
+        if (settings.usingLocalGraphics()) {
+            return;
+        }
+
+        // A week of weather only has a handful of conditions
+        boolean[] seen = new boolean[WeatherConditions.CATEGORY_COUNT];
+        final List<String> artUrls = new ArrayList<String>();
+        final List<String> artSlugs = new ArrayList<String>();
+        for (int weatherId : weatherIds) {
+            int category = WeatherConditions.getCategory(weatherId);
+            String artUrl = settings.getArtUrl(category);
+            if (!seen[category] && null != artUrl) {
+                seen[category] = true;
+                artUrls.add(artUrl);
+                artSlugs.add(WeatherConditions.getArtSlug(category));
+            }
+        }
+        if (artUrls.isEmpty()) {
+            return;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        // The detail widget has a row for each day, and sizes its art to fit them all
+        final int widgetRows = weatherIds.length;
+        BackgroundExecutor.submit(BackgroundExecutor.LANE_MAINTENANCE, LOG_TAG, new Runnable() {
+            @Override
+            public void run() {
+                Resources resources = appContext.getResources();
+                int listIcon = resources.getDimensionPixelSize(R.dimen.list_icon);
+                int todayIcon = resources.getDimensionPixelSize(R.dimen.today_icon);
+                int widgetIcon = RemoteViewsBitmapBudget.getDetailWidgetArtSize(resources,
+                        widgetRows);
+                int[] notificationIcon = getNotificationLargeIconSize(resources);
+
+                for (int i = 0; i < artUrls.size(); i++) {
+                    String artUrl = artUrls.get(i);
+                    // The forecast list and detail view, as ForecastAdapter and DetailFragment
+                    // load them
+                    fetch(Glide.with(appContext).load(artUrl).fitCenter()
+                            .listener(ImageCacheStats.<String, GlideDrawable>listener(
+                                    ImageCacheStats.SURFACE_PREFETCH))
+                            .into(listIcon, listIcon), artUrl);
+                    fetch(Glide.with(appContext).load(artUrl).fitCenter()
+                            .listener(ImageCacheStats.<String, GlideDrawable>listener(
+                                    ImageCacheStats.SURFACE_PREFETCH))
+                            .into(todayIcon, todayIcon), artUrl);
+                    // DetailWidgetRemoteViewsService, through its WidgetArtCache
+                    fetch(Glide.with(appContext).load(artUrl).asBitmap().fitCenter()
+                            .listener(ImageCacheStats.<String, Bitmap>listener(
+                                    ImageCacheStats.SURFACE_PREFETCH))
+                            .into(widgetIcon, widgetIcon), artUrl);
+                    // The notification's large icon, scaled and ready in NotificationIconCache
+                    NotificationIconCache.load(appContext, artSlugs.get(i), artUrl,
+                            notificationIcon, TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+                }
+                Log.d(LOG_TAG, ImageCacheStats.summary());
+            }
+        });
+    }
+
+    private static void fetch(FutureTarget<?> future, String artUrl) {
+        try {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            // The surface will just load it itself when it's shown
+            Log.d(LOG_TAG, "Couldn't prefetch " + artUrl + ": " + e);
+        } finally {
+            // Hands the image back to Glide's memory cache rather than keeping it here
+            Glide.clear(future);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+/**
+ * Posted on the {@link com.example.android.sunshine.app.WeatherEventBus} when the weather data,
+ * or the way it's shown, has changed.  The in-process counterpart of
+ * {@link SunshineSyncAdapter#ACTION_DATA_UPDATED}.
+ */
+public final class DataUpdatedEvent {
+
+    // WidgetRefreshCoordinator's REASON_ flags
+    public final int mReasons;
+    // Today's forecast as of this update, or null if it isn't known
+    public final TodayForecast mToday;
+
+    public DataUpdatedEvent(int reasons, TodayForecast today) {
+        mReasons = reasons;
+        mToday = today;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+import com.example.android.sunshine.app.ImageCacheStats;
+import com.example.android.sunshine.app.SettingsSnapshot;
+import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.common.WeatherConditions;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The notification's large icons, ready scaled, keyed by art slug and size.
+ *
+ * {@link ArtPrefetcher} fills this after a sync, off the sync thread.  When the notification
+ * needs an icon that isn't here yet, {@link #get} waits for it for a short, fixed time and then
+ * uses the built in art instead, so a slow art host can't hold up a sync.
+ */
+final class NotificationIconCache {
+
+    private static final String LOG_TAG = NotificationIconCache.class.getSimpleName();
+
+    // The most notifyWeather will wait for the art
+    static final long GET_TIMEOUT_MILLIS = 2000;
+
+    // A day's notification only needs one, a few more covers a change of art pack
+    private static final int MAX_ENTRIES = 4;
+
+    private static class Entry {
+        // null for the built in art
+        final String mArtUrl;
+        final Bitmap mBitmap;
+
+        Entry(String artUrl, Bitmap bitmap) {
+            mArtUrl = artUrl;
+            mBitmap = bitmap;
+        }
+    }
+
+    private static final LruCache<String, Entry> sCache = new LruCache<String, Entry>(MAX_ENTRIES);
+
+    private NotificationIconCache() {
+    }
+
+    private static String getKey(String slug, int width, int height) {
+        return slug + '/' + width + 'x' + height;
+    }
+
+    /**
+     * @return the large icon for a weather condition, from the cache if it's there.  Otherwise
+     *         waits at most {@link #GET_TIMEOUT_MILLIS} for the art, then falls back to the built
+     *         in art.  Null if the condition has no art.
+     */
+    static Bitmap get(Context context, int weatherId) {
+        int category = WeatherConditions.getCategory(weatherId);
+        String slug = WeatherConditions.getArtSlug(category);
+        if (null == slug) {
+            return null;
+        }
+        int[] size = ArtPrefetcher.getNotificationLargeIconSize(context.getResources());
+        String artUrl = SettingsSnapshot.get(context).getArtUrl(category);
+
+        Bitmap icon = null;
+        if (null != artUrl) {
+            icon = load(context, slug, artUrl, size, GET_TIMEOUT_MILLIS);
+        }
+        if (null == icon) {
+            icon = loadResource(context, slug, weatherId, size);
+        }
+        return icon;
+    }
+
+    /**
+     * Loads the art at the notification's size into the cache, unless it's already there.
+     * Blocks for up to {@code timeoutMillis}, so call it from a background thread.
+     *
+     * @return the icon, or null if it couldn't be loaded in time
+     */
+    static Bitmap load(Context context, String slug, String artUrl, int[] size,
+                       long timeoutMillis) {
+        String key = getKey(slug, size[0], size[1]);
+        Entry entry = sCache.get(key);
+        if (null != entry && artUrl.equals(entry.mArtUrl)) {
+            return entry.mBitmap;
+        }
+
+        FutureTarget<Bitmap> future = Glide.with(context)
+                .load(artUrl)
+                .asBitmap()
+                .listener(ImageCacheStats.<String, Bitmap>listener(
+                        ImageCacheStats.SURFACE_NOTIFICATION))
+                .fitCenter()
+                .into(size[0], size[1]);
+        try {
+            // Glide takes the bitmap back when the request is cleared, so keep a copy
+            Bitmap loaded = future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            Bitmap icon = loaded.copy(loaded.getConfig(), false);
+            sCache.put(key, new Entry(artUrl, icon));
+            return icon;
+        } catch (Exception e) {
+            Log.d(LOG_TAG, "Couldn't load large icon from " + artUrl + ": " + e);
+            return null;
+        } finally {
+            Glide.clear(future);
+        }
+    }
+
+    private static Bitmap loadResource(Context context, String slug, int weatherId, int[] size) {
+        String key = getKey(slug, size[0], size[1]);
+        Entry entry = sCache.get(key);
+        if (null != entry && null == entry.mArtUrl) {
+            return entry.mBitmap;
+        }
+
+        Resources resources = context.getResources();
+        int artResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
+        // Only decode as much of the art as the icon needs
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(resources, artResourceId, options);
+        options.inSampleSize = getSampleSize(options.outWidth, options.outHeight, size);
+        options.inJustDecodeBounds = false;
+        Bitmap art = BitmapFactory.decodeResource(resources, artResourceId, options);
+        if (null == art) {
+            return null;
+        }
+        Bitmap icon = Bitmap.createScaledBitmap(art, size[0], size[1], true);
+        if (icon != art) {
+            art.recycle();
+        }
+        sCache.put(key, new Entry(null, icon));
+        return icon;
+    }
+
+    /* The largest power of two the art can be shrunk by on decode and still cover the icon */
+    private static int getSampleSize(int width, int height, int[] size) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= size[0] && height / (sampleSize * 2) >= size[1]) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+}
@@ -1,6 +1,5 @@
 package com.example.android.sunshine.app.sync;
 
-import android.app.IntentService;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -8,6 +7,10 @@ import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
+import com.example.android.sunshine.app.BackgroundExecutor;
+import com.example.android.sunshine.app.BackgroundService;
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.Utility;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -17,8 +20,10 @@ import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.Wearable;
 
 import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 
-public class SendToWearService extends IntentService {
+public class SendToWearService extends BackgroundService {
     public final String LOG_TAG = SendToWearService.class.getSimpleName();
 
     // message path for weather update info
@@ -27,15 +32,18 @@ public class SendToWearService extends IntentService {
     private GoogleApiClient mGoogleApiClient;
     private NodeApi.NodeListener nodeListener;
     private String remoteNodeId;
+    // What the sync just parsed, so today's weather needn't be read back out of the preferences
+    private TodayForecast mToday;
 
     public SendToWearService() {
-        super("SendToWearService");
+        super("SendToWearService", BackgroundExecutor.LANE_SYNC);
         //Log.d(LOG_TAG, "SendToWearService Constructor");
     }
 
     @Override
     protected void onHandleIntent(Intent workIntent) {
         //Log.d(LOG_TAG, "onHandleIntent");
+        mToday = TodayForecast.getLatest(workIntent, Utility.getPreferredLocation(this));
 
         // set up and initiate wear communications
         setUpWearComms();
@@ -115,11 +123,24 @@ public class SendToWearService extends IntentService {
         } else {
             //Log.d(LOG_TAG, "$$$ CORRECT! mGoogleApiClient is connected!");
 
-            SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
-            String mHighTemp = sp.getString(SunshineSyncAdapter.LAST_HIGH_TEMP, "");
-            String mLowTemp = sp.getString(SunshineSyncAdapter.LAST_LOW_TEMP, "");
-            String mIcon = sp.getString(SunshineSyncAdapter.LAST_ICON, "800");
-            String updated = sp.getString(SunshineSyncAdapter.LAST_UPDATE, "");
+            String mHighTemp;
+            String mLowTemp;
+            String mIcon;
+            String updated;
+            if (null != mToday) {
+                // The same values the sync saved in the preferences
+                mHighTemp = String.valueOf(Math.round(mToday.mHigh));
+                mLowTemp = String.valueOf(Math.round(mToday.mLow));
+                mIcon = String.valueOf(mToday.mWeatherId);
+                updated = new SimpleDateFormat(getString(R.string.updated_time_date_format))
+                        .format(new Date());
+            } else {
+                SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
+                mHighTemp = sp.getString(SunshineSyncAdapter.LAST_HIGH_TEMP, "");
+                mLowTemp = sp.getString(SunshineSyncAdapter.LAST_LOW_TEMP, "");
+                mIcon = sp.getString(SunshineSyncAdapter.LAST_ICON, "800");
+                updated = sp.getString(SunshineSyncAdapter.LAST_UPDATE, "");
+            }
             //Log.d(LOG_TAG, "updateWear getInfoFromSharedPrefs - Hi Temp: " + mHighTemp + "  Low Temp: " + mLowTemp + " weather ID: " + mIcon + " updated: " + updated);
 
             String weather = mIcon + "," + mHighTemp + "," + mLowTemp + "," + updated;
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.example.android.sunshine.app.BackgroundExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Runs the things that follow a successful sync (widgets, notification, Muzei, wear) alongside
+ * each other, so the sync finishes as soon as the data is written rather than after the slowest
+ * of them.
+ *
+ * Consumers run in the {@link BackgroundExecutor}, each in the lane it's added with.  One that
+ * throws is logged and doesn't affect the others, and one that runs past its timeout is
+ * interrupted.  How long each took is kept for {@link #getLastDurationMillis}.
+ *
+ * They go on running after onPerformSync has returned, when nothing else may be keeping the
+ * process alive, and the notification can spend a couple of seconds waiting on its art.  So
+ * {@link SyncFanOutService} is held started from {@link #start} until the last one finishes.
+ */
+final class SyncFanOut {
+
+    // By consumer name
+    private static final Map<String, Long> sLastDurations = new ConcurrentHashMap<String, Long>();
+
+    private final Context mContext;
+    private final List<Consumer> mConsumers = new ArrayList<Consumer>();
+
+    SyncFanOut(Context context) {
+        mContext = context.getApplicationContext();
+    }
+
+    /**
+     * Adds a consumer to run when {@link #start} is called.
+     *
+     * @param name used in the log and for {@link #getLastDurationMillis}
+     * @param lane one of the BackgroundExecutor.LANE_ constants
+     * @param timeoutMillis how long it may run before it's interrupted
+     */
+    SyncFanOut add(String name, int lane, long timeoutMillis, Runnable consumer) {
+        mConsumers.add(new Consumer(name, lane, timeoutMillis, consumer));
+        return this;
+    }
+
+    /**
+     * Queues every consumer and returns straight away.
+     */
+    void start() {
+        if (mConsumers.isEmpty()) {
+            return;
+        }
+        SyncFanOutService.hold(mContext, mConsumers.size());
+        for (Consumer consumer : mConsumers) {
+            BackgroundExecutor.submit(consumer.mLane, consumer.mName, consumer.mTimeoutMillis,
+                    consumer);
+        }
+        mConsumers.clear();
+    }
+
+    /**
+     * @return how long the named consumer took the last time it ran, or -1 if it hasn't
+     */
+    static long getLastDurationMillis(String name) {
+        Long duration = sLastDurations.get(name);
+        return null == duration ? -1 : duration;
+    }
+
+    private class Consumer implements Runnable {
+        private final String mName;
+        private final int mLane;
+        private final long mTimeoutMillis;
+        private final Runnable mRunnable;
+
+        Consumer(String name, int lane, long timeoutMillis, Runnable runnable) {
+            mName = name;
+            mLane = lane;
+            mTimeoutMillis = timeoutMillis;
+            mRunnable = runnable;
+        }
+
+        @Override
+        public void run() {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                mRunnable.run();
+            } finally {
+                sLastDurations.put(mName, SystemClock.elapsedRealtime() - start);
+                SyncFanOutService.release(mContext);
+            }
+        }
+    }
+}
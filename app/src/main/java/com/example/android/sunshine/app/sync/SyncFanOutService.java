@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.os.IBinder;
+
+/**
+ * Keeps the process alive while {@link SyncFanOut}'s consumers are running, and stops itself
+ * once they have all finished or been interrupted.
+ */
+public class SyncFanOutService extends Service {
+
+    // Int extra: how many consumers have started (positive) or finished (negative)
+    private static final String EXTRA_CONSUMERS = "consumers";
+
+    // Consumers still running.  Main thread only.
+    private int mRunning;
+
+    static void hold(Context context, int consumers) {
+        context.startService(new Intent(context, SyncFanOutService.class)
+                .putExtra(EXTRA_CONSUMERS, consumers));
+    }
+
+    static void release(Context context) {
+        context.startService(new Intent(context, SyncFanOutService.class)
+                .putExtra(EXTRA_CONSUMERS, -1));
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (null != intent) {
+            mRunning += intent.getIntExtra(EXTRA_CONSUMERS, 0);
+        }
+        if (mRunning <= 0) {
+            mRunning = 0;
+            // Only stops if nothing has been started since
+            stopSelf(startId);
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
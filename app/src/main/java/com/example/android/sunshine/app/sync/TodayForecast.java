@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.sync;
+
+import android.content.ContentValues;
+import android.content.Intent;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import com.example.android.sunshine.app.WeatherEventBus;
+import com.example.android.sunshine.app.data.DayUtils;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Today's forecast as the sync adapter parsed it, handed to the notification, the widgets, Muzei
+ * and the wear service so they don't each query the provider for the row that was just written.
+ *
+ * Attached to their intents as {@link #EXTRA_TODAY}, and kept by the latest
+ * {@link DataUpdatedEvent}.  A consumer that finds neither, or only a forecast for another
+ * location or day, goes back to the provider as before.
+ */
+public class TodayForecast implements Parcelable {
+
+    public static final String EXTRA_TODAY = "today";
+
+    public final String mLocationSetting;
+    public final long mDate;
+    public final int mWeatherId;
+    public final double mHigh;
+    public final double mLow;
+    public final String mDescription;
+
+    public TodayForecast(String locationSetting, long date, int weatherId, double high,
+                         double low, String description) {
+        mLocationSetting = locationSetting;
+        mDate = date;
+        mWeatherId = weatherId;
+        mHigh = high;
+        mLow = low;
+        mDescription = description;
+    }
+
+    /**
+     * @param weatherValues a row as the sync adapter inserts it
+     */
+    static TodayForecast fromValues(String locationSetting, ContentValues weatherValues) {
+        return new TodayForecast(locationSetting,
+                weatherValues.getAsLong(WeatherEntry.COLUMN_DATE),
+                weatherValues.getAsInteger(WeatherEntry.COLUMN_WEATHER_ID),
+                weatherValues.getAsDouble(WeatherEntry.COLUMN_MAX_TEMP),
+                weatherValues.getAsDouble(WeatherEntry.COLUMN_MIN_TEMP),
+                weatherValues.getAsString(WeatherEntry.COLUMN_SHORT_DESC));
+    }
+
+    /**
+     * @return the forecast attached to an intent, or null if there isn't one, or it's for another
+     *         location or isn't today's any more
+     */
+    public static TodayForecast fromIntent(Intent intent, String locationSetting) {
+        TodayForecast today = null == intent ? null
+                : intent.<TodayForecast>getParcelableExtra(EXTRA_TODAY);
+        return isCurrent(today, locationSetting) ? today : null;
+    }
+
+    /**
+     * As {@link #fromIntent}, falling back to the forecast from the latest
+     * {@link DataUpdatedEvent} when the intent doesn't have a current one.
+     */
+    public static TodayForecast getLatest(Intent intent, String locationSetting) {
+        TodayForecast today = fromIntent(intent, locationSetting);
+        if (null == today) {
+            DataUpdatedEvent event = WeatherEventBus.getSticky(DataUpdatedEvent.class);
+            if (null != event && isCurrent(event.mToday, locationSetting)) {
+                today = event.mToday;
+            }
+        }
+        return today;
+    }
+
+    private static boolean isCurrent(TodayForecast today, String locationSetting) {
+        return null != today && today.mLocationSetting.equals(locationSetting)
+                && today.mDate == DayUtils.normalizeDate(System.currentTimeMillis());
+    }
+
+    private TodayForecast(Parcel in) {
+        this(in.readString(), in.readLong(), in.readInt(), in.readDouble(), in.readDouble(),
+                in.readString());
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(mLocationSetting);
+        dest.writeLong(mDate);
+        dest.writeInt(mWeatherId);
+        dest.writeDouble(mHigh);
+        dest.writeDouble(mLow);
+        dest.writeString(mDescription);
+    }
+
+    public static final Parcelable.Creator<TodayForecast> CREATOR =
+            new Parcelable.Creator<TodayForecast>() {
+                @Override
+                public TodayForecast createFromParcel(Parcel in) {
+                    return new TodayForecast(in);
+                }
+
+                @Override
+                public TodayForecast[] newArray(int size) {
+                    return new TodayForecast[size];
+                }
+            };
+}
@@ -7,18 +7,16 @@ import android.graphics.Bitmap;
 import android.net.Uri;
 import android.os.Binder;
 import android.os.Build;
-import android.util.Log;
 import android.widget.AdapterView;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.request.target.Target;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
 import com.example.android.sunshine.app.data.WeatherContract;
 
-import java.util.concurrent.ExecutionException;
+import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * RemoteViewsService controlling the data being shown in the scrollable weather detail widget
@@ -46,6 +44,14 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
     public RemoteViewsFactory onGetViewFactory(Intent intent) {
         return new RemoteViewsFactory() {
             private Cursor data = null;
+            private final WidgetArtCache artCache = new WidgetArtCache(
+                    DetailWidgetRemoteViewsService.this,
+                    RemoteViewsBitmapBudget.MAX_BYTES_PER_UPDATE);
+            private RemoteViewsBitmapBudget budget = newBudget();
+
+            private RemoteViewsBitmapBudget newBudget() {
+                return new RemoteViewsBitmapBudget(LOG_TAG, getCount());
+            }
 
             @Override
             public void onCreate() {
@@ -71,6 +77,31 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                         null,
                         WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
                 Binder.restoreCallingIdentity(identityToken);
+                budget.logPayload();
+                budget = newBudget();
+                loadArt();
+            }
+
+            /*
+                Loads the art for every row up front, in parallel, rather than one row at a time
+                in getViewAt.
+             */
+            private void loadArt() {
+                if (data == null
+                        || Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this)) {
+                    artCache.clear();
+                    return;
+                }
+                // Most days share their art with another
+                Set<String> artUrls = new LinkedHashSet<String>();
+                for (int i = 0; data.moveToPosition(i); i++) {
+                    artUrls.add(Utility.getArtUrlForWeatherCondition(
+                            DetailWidgetRemoteViewsService.this,
+                            data.getInt(INDEX_WEATHER_CONDITION_ID)));
+                }
+                // Small enough that every row's icon fits the budget
+                artCache.load(artUrls, RemoteViewsBitmapBudget.getDetailWidgetArtSize(
+                        getResources(), getCount()));
             }
 
             @Override
@@ -79,6 +110,8 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                     data.close();
                     data = null;
                 }
+                budget.logPayload();
+                artCache.clear();
             }
 
             @Override
@@ -98,17 +131,9 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                 int weatherArtResourceId = Utility.getIconResourceForWeatherCondition(weatherId);
                 Bitmap weatherArtImage = null;
                 if ( !Utility.usingLocalGraphics(DetailWidgetRemoteViewsService.this) ) {
-                    String weatherArtResourceUrl = Utility.getArtUrlForWeatherCondition(
-                            DetailWidgetRemoteViewsService.this, weatherId);
-                    try {
-                        weatherArtImage = Glide.with(DetailWidgetRemoteViewsService.this)
-                                .load(weatherArtResourceUrl)
-                                .asBitmap()
-                                .error(weatherArtResourceId)
-                                .into(Target.SIZE_ORIGINAL, Target.SIZE_ORIGINAL).get();
-                    } catch (InterruptedException | ExecutionException e) {
-                        Log.e(LOG_TAG, "Error retrieving large icon from " + weatherArtResourceUrl, e);
-                    }
+                    // Only what onDataSetChanged already loaded, never wait on it here
+                    weatherArtImage = artCache.get(Utility.getArtUrlForWeatherCondition(
+                            DetailWidgetRemoteViewsService.this, weatherId));
                 }
                 String description = data.getString(INDEX_WEATHER_DESC);
                 long dateInMillis = data.getLong(INDEX_WEATHER_DATE);
@@ -120,11 +145,8 @@ public class DetailWidgetRemoteViewsService extends RemoteViewsService {
                         Utility.formatTemperature(DetailWidgetRemoteViewsService.this, maxTemp);
                 String formattedMinTemperature =
                         Utility.formatTemperature(DetailWidgetRemoteViewsService.this, minTemp);
-                if (weatherArtImage != null) {
-                    views.setImageViewBitmap(R.id.widget_icon, weatherArtImage);
-                } else {
-                    views.setImageViewResource(R.id.widget_icon, weatherArtResourceId);
-                }
+                budget.setImageViewBitmap(views, position, R.id.widget_icon, weatherArtImage,
+                        weatherArtResourceId);
                 if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH_MR1) {
                     setRemoteContentDescription(views, description);
                 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.util.Log;
+import android.util.SparseIntArray;
+import android.widget.RemoteViews;
+
+import com.example.android.sunshine.app.R;
+
+/**
+ * Keeps the bitmaps one widget update sends to the launcher within a byte budget.
+ *
+ * Every bitmap set on a RemoteViews is copied into the binder transaction that delivers it, and
+ * a collection widget's host keeps many rows' views at once.  An update's budget is split evenly
+ * between its views; art is loaded at a size that fits a views' share (see {@link #fitSize}),
+ * and anything that still doesn't fit is replaced by the built in icon.
+ *
+ * Create one per update.  Not thread safe.
+ */
+public class RemoteViewsBitmapBudget {
+
+    private static final String LOG_TAG = RemoteViewsBitmapBudget.class.getSimpleName();
+
+    // Well under the 1MB transaction buffer, which every binder call in the process shares
+    static final int MAX_BYTES_PER_VIEWS = 200 * 1024;
+    // For all of an update's views together
+    static final int MAX_BYTES_PER_UPDATE = 1024 * 1024;
+
+    // ARGB_8888, what Glide decodes the art to
+    private static final int BYTES_PER_PIXEL = 4;
+
+    private final String mWidget;
+    private final int mViewsCount;
+    private final int mMaxBytesPerViews;
+
+    // Bytes attached to each views, by position.  Rebinding a position replaces its entry.
+    private final SparseIntArray mAttached = new SparseIntArray();
+    private int mFallbacks;
+
+    /**
+     * @param widget names the widget in the log
+     * @param viewsCount how many RemoteViews the update is made of, e.g. a collection's rows
+     */
+    RemoteViewsBitmapBudget(String widget, int viewsCount) {
+        mWidget = widget;
+        mViewsCount = Math.max(1, viewsCount);
+        mMaxBytesPerViews = getMaxBytesPerViews(mViewsCount);
+    }
+
+    private static int getMaxBytesPerViews(int viewsCount) {
+        return Math.min(MAX_BYTES_PER_VIEWS, MAX_BYTES_PER_UPDATE / Math.max(1, viewsCount));
+    }
+
+    private static int fitSize(int size, int viewsCount) {
+        int maxSize = (int) Math.sqrt(getMaxBytesPerViews(viewsCount) / BYTES_PER_PIXEL);
+        return Math.min(size, maxSize);
+    }
+
+    /**
+     * @return the largest width and height, no more than {@code size}, of a square bitmap that
+     *         fits one views' share of the budget
+     */
+    int fitSize(int size) {
+        return fitSize(size, mViewsCount);
+    }
+
+    /**
+     * @return the size the detail widget loads its art at when it has {@code rows} rows, so that
+     *         a prefetch can warm the same entry in Glide's result cache
+     */
+    public static int getDetailWidgetArtSize(Resources resources, int rows) {
+        return fitSize(resources.getDimensionPixelSize(R.dimen.list_icon), rows);
+    }
+
+    /**
+     * Sets the bitmap on an image view if it fits the views' share of the budget, otherwise the
+     * resource.
+     *
+     * @param position which of the update's views this is
+     * @param bitmap may be null, in which case the resource is used
+     */
+    void setImageViewBitmap(RemoteViews views, int position, int viewId, Bitmap bitmap,
+                            int fallbackResId) {
+        int bytes = null == bitmap ? 0 : bitmap.getRowBytes() * bitmap.getHeight();
+        if (null != bitmap && bytes <= mMaxBytesPerViews) {
+            views.setImageViewBitmap(viewId, bitmap);
+            mAttached.put(position, bytes);
+            return;
+        }
+        if (null != bitmap) {
+            mFallbacks++;
+            Log.d(LOG_TAG, mWidget + ": " + bytes + " byte bitmap is over the "
+                    + mMaxBytesPerViews + " byte share");
+        }
+        views.setImageViewResource(viewId, fallbackResId);
+        mAttached.delete(position);
+    }
+
+    /**
+     * @return the bytes of bitmap currently attached across all the update's views
+     */
+    int getTotalBytes() {
+        int total = 0;
+        for (int i = 0; i < mAttached.size(); i++) {
+            total += mAttached.valueAt(i);
+        }
+        return total;
+    }
+
+    /**
+     * Logs what the update sent, for tuning the budget.
+     */
+    void logPayload() {
+        Log.d(LOG_TAG, mWidget + ": " + mAttached.size() + " of " + mViewsCount
+                + " views with bitmaps, " + getTotalBytes() + " bytes, " + mFallbacks
+                + " over budget");
+    }
+}
@@ -16,7 +16,6 @@
 package com.example.android.sunshine.app.widget;
 
 import android.annotation.TargetApi;
-import android.app.IntentService;
 import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
@@ -26,32 +25,57 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.util.DisplayMetrics;
+import android.util.SparseArray;
 import android.util.TypedValue;
 import android.widget.RemoteViews;
 
+import com.example.android.sunshine.app.BackgroundExecutor;
+import com.example.android.sunshine.app.BackgroundService;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.data.ForecastSnapshot;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.sync.TodayForecast;
+
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * IntentService which handles updating all Today widgets with the latest data
+ * Service which handles updating all Today widgets with the latest data, in the
+ * background executor's UI visible lane
+ *
+ * Each widget remembers what it was last drawn from, and is left alone if that hasn't
+ * changed, so a sync that doesn't change today's weather doesn't redraw it.
  */
-public class TodayWidgetIntentService extends IntentService {
+public class TodayWidgetIntentService extends BackgroundService {
+    /**
+     * Boolean extra: update every widget even if its data hasn't changed, e.g. because the host
+     * asked for it and may have lost the old views.
+     */
+    public static final String EXTRA_FORCE_UPDATE = "force_update";
+
     private static final String[] FORECAST_COLUMNS = {
             WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
             WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
             WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
-            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_DATE
     };
     // these indices must match the projection
     private static final int INDEX_WEATHER_ID = 0;
     private static final int INDEX_SHORT_DESC = 1;
     private static final int INDEX_MAX_TEMP = 2;
     private static final int INDEX_MIN_TEMP = 3;
+    private static final int INDEX_DATE = 4;
+
+    // What each widget id was last drawn from.  Lost with the process, which only costs one
+    // redundant update.  Guarded by itself.
+    private static final SparseArray<List<Object>> sRenderedInputs =
+            new SparseArray<List<Object>>();
 
     public TodayWidgetIntentService() {
-        super("TodayWidgetIntentService");
+        super("TodayWidgetIntentService", BackgroundExecutor.LANE_UI_VISIBLE);
     }
 
     @Override
@@ -60,30 +84,26 @@ public class TodayWidgetIntentService extends IntentService {
         AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(this);
         int[] appWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(this,
                 TodayWidgetProvider.class));
+        if (appWidgetIds.length == 0) {
+            return;
+        }
+        boolean force = intent.getBooleanExtra(EXTRA_FORCE_UPDATE, false);
 
-        // Get today's data from the ContentProvider
+        // Get today's data, straight from the sync if it sent it or posted it in this process
         String location = Utility.getPreferredLocation(this);
-        Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
-                location, System.currentTimeMillis());
-        Cursor data = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
-                null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
-        if (data == null) {
-            return;
+        TodayForecast today = TodayForecast.getLatest(intent, location);
+        if (today == null) {
+            today = queryToday(location);
         }
-        if (!data.moveToFirst()) {
-            data.close();
+        if (today == null) {
             return;
         }
 
-        // Extract the weather data from the Cursor
-        int weatherId = data.getInt(INDEX_WEATHER_ID);
+        int weatherId = today.mWeatherId;
         int weatherArtResourceId = Utility.getArtResourceForWeatherCondition(weatherId);
-        String description = data.getString(INDEX_SHORT_DESC);
-        double maxTemp = data.getDouble(INDEX_MAX_TEMP);
-        double minTemp = data.getDouble(INDEX_MIN_TEMP);
-        String formattedMaxTemperature = Utility.formatTemperature(this, maxTemp);
-        String formattedMinTemperature = Utility.formatTemperature(this, minTemp);
-        data.close();
+        String description = today.mDescription;
+        String formattedMaxTemperature = Utility.formatTemperature(this, today.mHigh);
+        String formattedMinTemperature = Utility.formatTemperature(this, today.mLow);
 
         // Perform this loop procedure for each Today widget
         for (int appWidgetId : appWidgetIds) {
@@ -99,6 +119,14 @@ public class TodayWidgetIntentService extends IntentService {
             } else {
                 layoutId = R.layout.widget_today_small;
             }
+
+            // The formatted temperatures cover the units and locale, the layout the width
+            List<Object> inputs = Arrays.asList(new Object[] {layoutId, weatherArtResourceId,
+                    description, formattedMaxTemperature, formattedMinTemperature});
+            if (!force && isUnchanged(appWidgetId, inputs)) {
+                continue;
+            }
+
             RemoteViews views = new RemoteViews(getPackageName(), layoutId);
 
             // Add the data to the RemoteViews
@@ -118,6 +146,57 @@ public class TodayWidgetIntentService extends IntentService {
 
             // Tell the AppWidgetManager to perform an update on the current app widget
             appWidgetManager.updateAppWidget(appWidgetId, views);
+            synchronized (sRenderedInputs) {
+                sRenderedInputs.put(appWidgetId, inputs);
+            }
+        }
+    }
+
+    /*
+        Today's forecast from the sync's snapshot if it has it, otherwise from the
+        ContentProvider.  Null if there isn't one.
+     */
+    private TodayForecast queryToday(String location) {
+        Cursor data = ForecastSnapshot.read(this, location, FORECAST_COLUMNS);
+        if (data != null && data.getCount() == 0) {
+            data.close();
+            data = null;
+        }
+        if (data == null) {
+            Uri weatherForLocationUri = WeatherContract.WeatherEntry
+                    .buildWeatherLocationWithStartDate(location, System.currentTimeMillis());
+            data = getContentResolver().query(weatherForLocationUri, FORECAST_COLUMNS, null,
+                    null, WeatherContract.WeatherEntry.COLUMN_DATE + " ASC");
+        }
+        if (data == null) {
+            return null;
+        }
+        try {
+            if (!data.moveToFirst()) {
+                return null;
+            }
+            return new TodayForecast(location, data.getLong(INDEX_DATE),
+                    data.getInt(INDEX_WEATHER_ID), data.getDouble(INDEX_MAX_TEMP),
+                    data.getDouble(INDEX_MIN_TEMP), data.getString(INDEX_SHORT_DESC));
+        } finally {
+            data.close();
+        }
+    }
+
+    private static boolean isUnchanged(int appWidgetId, List<Object> inputs) {
+        synchronized (sRenderedInputs) {
+            return inputs.equals(sRenderedInputs.get(appWidgetId));
+        }
+    }
+
+    /**
+     * Forgets what deleted widgets were drawn from.
+     */
+    static void forgetWidgets(int[] appWidgetIds) {
+        synchronized (sRenderedInputs) {
+            for (int appWidgetId : appWidgetIds) {
+                sRenderedInputs.delete(appWidgetId);
+            }
         }
     }
 
@@ -34,20 +34,31 @@ public class TodayWidgetProvider extends AppWidgetProvider {
 
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        context.startService(new Intent(context, TodayWidgetIntentService.class));
+        WidgetRefreshCoordinator.subscribe(context);
+        // The host may not have the widgets' views any more, e.g. after it restarted
+        context.startService(new Intent(context, TodayWidgetIntentService.class)
+                .putExtra(TodayWidgetIntentService.EXTRA_FORCE_UPDATE, true));
+    }
+
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        TodayWidgetIntentService.forgetWidgets(appWidgetIds);
     }
 
     @Override
     public void onAppWidgetOptionsChanged(Context context, AppWidgetManager appWidgetManager,
                                           int appWidgetId, Bundle newOptions) {
-        context.startService(new Intent(context, TodayWidgetIntentService.class));
+        // Resizing sends a stream of these
+        WidgetRefreshCoordinator.requestRefresh(context, WidgetRefreshCoordinator.WIDGET_TODAY,
+                WidgetRefreshCoordinator.REASON_OPTIONS);
     }
 
     @Override
     public void onReceive(@NonNull Context context, @NonNull Intent intent) {
         super.onReceive(context, intent);
         if (SunshineSyncAdapter.ACTION_DATA_UPDATED.equals(intent.getAction())) {
-            context.startService(new Intent(context, TodayWidgetIntentService.class));
+            WidgetRefreshCoordinator.onDataUpdatedBroadcast(context,
+                    WidgetRefreshCoordinator.WIDGET_TODAY, intent);
         }
     }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.FutureTarget;
+import com.example.android.sunshine.app.ImageCacheStats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The art for one widget's rows, loaded all at once at the size the widget shows it.
+ *
+ * Every bitmap set on a RemoteViews is copied to the launcher, so they're loaded no bigger than
+ * the widget's {@link RemoteViewsBitmapBudget} allows and kept to a total byte budget.  Anything
+ * that isn't ready in time, or doesn't fit, is left out and the row falls back to the built in
+ * icon.
+ *
+ * Not thread safe, RemoteViewsService already calls each factory from one thread at a time.
+ */
+class WidgetArtCache {
+
+    private static final String LOG_TAG = WidgetArtCache.class.getSimpleName();
+
+    // For the whole batch, the loads run in parallel
+    private static final long TIMEOUT_MILLIS = 10 * 1000;
+
+    private final Context mContext;
+    private final int mMaxBytes;
+
+    private final Map<String, Bitmap> mArt = new HashMap<String, Bitmap>();
+    // Kept until the bitmaps are dropped, so Glide doesn't recycle them while they're in use
+    private final List<FutureTarget<Bitmap>> mFutures = new ArrayList<FutureTarget<Bitmap>>();
+
+    /**
+     * @param maxBytes the most the cached bitmaps may add up to
+     */
+    WidgetArtCache(Context context, int maxBytes) {
+        mContext = context;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Replaces the cached art with the given urls'.  Blocks until they've all loaded or the
+     * timeout has passed, so must not be called on the main thread.
+     *
+     * @param size the width and height to load the art at, in pixels
+     */
+    void load(Collection<String> artUrls, int size) {
+        clear();
+
+        // Start them all before waiting on any
+        List<String> urls = new ArrayList<String>(artUrls);
+        for (String artUrl : urls) {
+            mFutures.add(Glide.with(mContext)
+                    .load(artUrl)
+                    .asBitmap()
+                    .fitCenter()
+                    .listener(ImageCacheStats.<String, Bitmap>listener(
+                            ImageCacheStats.SURFACE_WIDGET))
+                    .into(size, size));
+        }
+
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MILLIS;
+        int bytes = 0;
+        for (int i = 0; i < urls.size(); i++) {
+            String artUrl = urls.get(i);
+            try {
+                long remaining = Math.max(0, deadline - SystemClock.elapsedRealtime());
+                Bitmap bitmap = mFutures.get(i).get(remaining, TimeUnit.MILLISECONDS);
+                int bitmapBytes = bitmap.getRowBytes() * bitmap.getHeight();
+                if (bytes + bitmapBytes > mMaxBytes) {
+                    Log.d(LOG_TAG, "No room for " + artUrl);
+                    continue;
+                }
+                bytes += bitmapBytes;
+                mArt.put(artUrl, bitmap);
+            } catch (InterruptedException e) {
+                // Keep what has loaded, and leave the interrupt for whoever asked for it
+                Log.d(LOG_TAG, "Interrupted waiting for " + artUrl);
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                Log.d(LOG_TAG, "Couldn't load " + artUrl + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * @return the loaded art for a url, or null if it isn't ready
+     */
+    Bitmap get(String artUrl) {
+        return mArt.get(artUrl);
+    }
+
+    /**
+     * Drops all the art, handing the bitmaps back to Glide.
+     */
+    void clear() {
+        mArt.clear();
+        for (FutureTarget<Bitmap> future : mFutures) {
+            Glide.clear(future);
+        }
+        mFutures.clear();
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.annotation.TargetApi;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.WeatherEventBus;
+import com.example.android.sunshine.app.sync.DataUpdatedEvent;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.app.sync.TodayForecast;
+
+/**
+ * Folds bursts of widget refresh requests into one refresh per widget type.
+ *
+ * A sync, a settings change and a resize can all land within a second or two of each other, and
+ * each used to refresh every widget, which for the detail widget means requerying its whole list.
+ * The first request for a widget type starts a window (see
+ * {@code R.integer.widget_refresh_window_millis}), anything else that arrives during it is merged
+ * in, and the refresh runs once when it closes with every reason that was asked for.  The
+ * window is held by {@link WidgetRefreshService}, so a pending refresh keeps the process alive.
+ *
+ * Updates reach it over the {@link WeatherEventBus} once a widget provider has run in this
+ * process, and as an {@link SunshineSyncAdapter#ACTION_DATA_UPDATED} broadcast until then.
+ */
+public final class WidgetRefreshCoordinator {
+
+    private static final String LOG_TAG = WidgetRefreshCoordinator.class.getSimpleName();
+
+    /**
+     * Int extra on {@link SunshineSyncAdapter#ACTION_DATA_UPDATED}: the REASON_ flags for it.
+     */
+    public static final String EXTRA_REASONS = "reasons";
+
+    /**
+     * Long extra on {@link SunshineSyncAdapter#ACTION_DATA_UPDATED}: the
+     * {@link SystemClock#elapsedRealtime()} it was sent at.
+     */
+    public static final String EXTRA_SENT_AT = "sent_at";
+
+    public static final int REASON_SYNC = 1;
+    public static final int REASON_SETTINGS = 2;
+    public static final int REASON_OPTIONS = 4;
+
+    static final int WIDGET_TODAY = 0;
+    static final int WIDGET_DETAIL = 1;
+    static final int WIDGET_COUNT = 2;
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    // Whether updates are being taken from the bus.  Main thread only.
+    private static boolean sSubscribed;
+
+    private WidgetRefreshCoordinator() {
+    }
+
+    /**
+     * Tells every widget that the weather data, or the way it's shown, has changed.
+     */
+    public static void notifyDataUpdated(Context context, int reasons) {
+        notifyDataUpdated(context, reasons, null);
+    }
+
+    /**
+     * As {@link #notifyDataUpdated(Context, int)}, handing the widgets today's forecast as well.
+     */
+    public static void notifyDataUpdated(Context context, int reasons, TodayForecast today) {
+        if (null == today) {
+            // A settings change doesn't change the forecast, keep the one the bus last had
+            DataUpdatedEvent latest = WeatherEventBus.getSticky(DataUpdatedEvent.class);
+            today = null == latest ? null : latest.mToday;
+        }
+        if (0 < WeatherEventBus.post(new DataUpdatedEvent(reasons, today))) {
+            return;
+        }
+
+        // Nothing in this process is listening, so wake the widget providers up.
+        // Setting the package ensures that only components in our app will receive the broadcast
+        Intent intent = new Intent(SunshineSyncAdapter.ACTION_DATA_UPDATED)
+                .setPackage(context.getPackageName())
+                .putExtra(EXTRA_REASONS, reasons)
+                .putExtra(EXTRA_SENT_AT, SystemClock.elapsedRealtime());
+        if (null != today) {
+            intent.putExtra(TodayForecast.EXTRA_TODAY, today);
+        }
+        context.sendBroadcast(intent);
+    }
+
+    /**
+     * @return the reasons carried by an {@link SunshineSyncAdapter#ACTION_DATA_UPDATED} intent
+     */
+    static int getReasons(Intent intent) {
+        // Anything that didn't say is treated as a sync, which is what it used to mean
+        return intent.getIntExtra(EXTRA_REASONS, REASON_SYNC);
+    }
+
+    /**
+     * Handles an {@link SunshineSyncAdapter#ACTION_DATA_UPDATED} broadcast received by a widget
+     * type's provider.  Must be called on the main thread.
+     */
+    static void onDataUpdatedBroadcast(Context context, int widget, Intent intent) {
+        long sentAt = intent.getLongExtra(EXTRA_SENT_AT, 0);
+        if (0 != sentAt) {
+            WeatherEventBus.recordLatency(WeatherEventBus.PATH_BROADCAST, sentAt);
+        }
+        subscribe(context);
+        requestRefresh(context, widget, getReasons(intent), intent);
+    }
+
+    /**
+     * Takes later updates from the bus rather than by broadcast, for as long as this process
+     * lives.  Must be called on the main thread, as widget providers are.
+     */
+    static void subscribe(Context context) {
+        if (sSubscribed) {
+            return;
+        }
+        sSubscribed = true;
+
+        final Context appContext = context.getApplicationContext();
+        WeatherEventBus.subscribe(DataUpdatedEvent.class, sHandler,
+                new WeatherEventBus.Subscriber<DataUpdatedEvent>() {
+                    @Override
+                    public void onEvent(DataUpdatedEvent event) {
+                        scheduleRefresh(appContext, WIDGET_TODAY, event.mReasons, event.mToday);
+                        // The detail widget's provider is disabled where it can't work
+                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                            scheduleRefresh(appContext, WIDGET_DETAIL, event.mReasons, null);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Asks for a widget type to be refreshed at the end of the current window, starting one if
+     * there isn't one.  Must be called on the main thread, as widget providers are.
+     */
+    static void requestRefresh(Context context, int widget, int reasons) {
+        requestRefresh(context, widget, reasons, null);
+    }
+
+    /**
+     * As {@link #requestRefresh(Context, int, int)}, passing on the forecast an
+     * {@link SunshineSyncAdapter#ACTION_DATA_UPDATED} intent came with, if any.
+     */
+    static void requestRefresh(Context context, int widget, int reasons, Intent intent) {
+        TodayForecast today = null == intent ? null
+                : intent.<TodayForecast>getParcelableExtra(TodayForecast.EXTRA_TODAY);
+        scheduleRefresh(context, widget, reasons, today);
+    }
+
+    private static void scheduleRefresh(Context context, int widget, int reasons,
+                                        TodayForecast today) {
+        // The window is kept by a started service, so the process isn't let go while it's open
+        Intent intent = new Intent(context, WidgetRefreshService.class)
+                .putExtra(WidgetRefreshService.EXTRA_WIDGET, widget)
+                .putExtra(EXTRA_REASONS, reasons);
+        if (null != today) {
+            intent.putExtra(TodayForecast.EXTRA_TODAY, today);
+        }
+        context.startService(intent);
+    }
+
+    static void refresh(Context context, int widget, int reasons, TodayForecast today) {
+        Log.d(LOG_TAG, "Refreshing widget type " + widget + " for reasons " + reasons);
+        switch (widget) {
+            case WIDGET_TODAY:
+                Intent intent = new Intent(context, TodayWidgetIntentService.class);
+                if (null != today) {
+                    intent.putExtra(TodayForecast.EXTRA_TODAY, today);
+                }
+                context.startService(intent);
+                break;
+            case WIDGET_DETAIL:
+                refreshDetail(context);
+                break;
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void refreshDetail(Context context) {
+        AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
+        int[] appWidgetIds = appWidgetManager.getAppWidgetIds(
+                new ComponentName(context, DetailWidgetProvider.class));
+        appWidgetManager.notifyAppWidgetViewDataChanged(appWidgetIds, R.id.widget_list);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.app.widget;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.sync.TodayForecast;
+
+/**
+ * Holds {@link WidgetRefreshCoordinator}'s refresh windows open.
+ *
+ * A window can be opened by a broadcast that is the only thing running in the process, and a
+ * refresh posted from the receiver alone would be lost if the process were killed before it
+ * closed.  As a started service this keeps the process until every pending refresh has run, then
+ * stops itself.
+ */
+public class WidgetRefreshService extends Service {
+
+    /**
+     * Int extra: the WidgetRefreshCoordinator.WIDGET_ type to refresh.
+     */
+    static final String EXTRA_WIDGET = "widget";
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    // The reasons waiting on each widget type's refresh, 0 if none is.  Main thread only.
+    private final int[] mPendingReasons = new int[WidgetRefreshCoordinator.WIDGET_COUNT];
+    // The latest forecast any of those requests came with, if one did.  Main thread only.
+    private final TodayForecast[] mPendingToday =
+            new TodayForecast[WidgetRefreshCoordinator.WIDGET_COUNT];
+    private int mLastStartId;
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        mLastStartId = startId;
+        if (null == intent) {
+            stopIfIdle();
+            return START_NOT_STICKY;
+        }
+        final int widget = intent.getIntExtra(EXTRA_WIDGET, WidgetRefreshCoordinator.WIDGET_TODAY);
+        int reasons = WidgetRefreshCoordinator.getReasons(intent);
+        TodayForecast today = intent.getParcelableExtra(TodayForecast.EXTRA_TODAY);
+        if (null != today) {
+            mPendingToday[widget] = today;
+        }
+        if (0 != mPendingReasons[widget]) {
+            mPendingReasons[widget] |= reasons;
+            return START_NOT_STICKY;
+        }
+        mPendingReasons[widget] = reasons;
+
+        long window = getResources().getInteger(R.integer.widget_refresh_window_millis);
+        mHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                int pending = mPendingReasons[widget];
+                TodayForecast today = mPendingToday[widget];
+                mPendingReasons[widget] = 0;
+                mPendingToday[widget] = null;
+                WidgetRefreshCoordinator.refresh(getApplicationContext(), widget, pending, today);
+                stopIfIdle();
+            }
+        }, window);
+        return START_NOT_STICKY;
+    }
+
+    /* Stops the service unless a window is still open, or it has been started again since */
+    private void stopIfIdle() {
+        for (int reasons : mPendingReasons) {
+            if (0 != reasons) {
+                return;
+            }
+        }
+        stopSelf(mLastStartId);
+    }
+
+    @Override
+    public void onDestroy() {
+        mHandler.removeCallbacksAndMessages(null);
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
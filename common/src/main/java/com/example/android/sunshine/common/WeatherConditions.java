@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.android.sunshine.common;
+
+/**
+ * Maps OpenWeatherMap condition ids to the handful of categories Sunshine has artwork for.
+ *
+ * The mapping is worked out once into a table indexed by id, so a lookup is an array read rather
+ * than a chain of range checks.  Each app keeps its own small table from category to its own
+ * drawables, since resource ids differ between the phone and wear builds.
+ *
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions {
+
+    // No artwork for this id
+    public static final int CATEGORY_NONE = 0;
+    public static final int CATEGORY_STORM = 1;
+    public static final int CATEGORY_LIGHT_RAIN = 2;
+    public static final int CATEGORY_RAIN = 3;
+    public static final int CATEGORY_SNOW = 4;
+    public static final int CATEGORY_FOG = 5;
+    public static final int CATEGORY_CLEAR = 6;
+    public static final int CATEGORY_LIGHT_CLOUDS = 7;
+    public static final int CATEGORY_CLOUDS = 8;
+    public static final int CATEGORY_COUNT = 9;
+
+    // Condition ids are three digits
+    public static final int MAX_ID = 999;
+
+    // Names used in the art pack urls, indexed by category
+    private static final String[] ART_SLUGS = {
+            null,
+            "storm",
+            "light_rain",
+            "rain",
+            "snow",
+            "fog",
+            "clear",
+            "light_clouds",
+            "clouds"
+    };
+
+    private static final byte[] sCategories = new byte[MAX_ID + 1];
+
+    static {
+        // Later ranges only fill ids that are still unset, so the first range listed wins.  That
+        // is what keeps 761 as fog rather than storm.
+        fill(200, 232, CATEGORY_STORM);
+        fill(300, 321, CATEGORY_LIGHT_RAIN);
+        fill(500, 504, CATEGORY_RAIN);
+        fill(511, 511, CATEGORY_SNOW);
+        fill(520, 531, CATEGORY_RAIN);
+        fill(600, 622, CATEGORY_SNOW);
+        fill(701, 761, CATEGORY_FOG);
+        fill(761, 761, CATEGORY_STORM);
+        fill(781, 781, CATEGORY_STORM);
+        fill(800, 800, CATEGORY_CLEAR);
+        fill(801, 801, CATEGORY_LIGHT_CLOUDS);
+        fill(802, 804, CATEGORY_CLOUDS);
+    }
+
+    private WeatherConditions() {
+    }
+
+    private static void fill(int first, int last, int category) {
+        for (int id = first; id <= last; id++) {
+            if (sCategories[id] == CATEGORY_NONE) {
+                sCategories[id] = (byte) category;
+            }
+        }
+    }
+
+    /**
+     * @param weatherId from OpenWeatherMap API response
+     * @return one of the CATEGORY_ constants, CATEGORY_NONE if there is no artwork for the id
+     */
+    public static int getCategory(int weatherId) {
+        if (weatherId < 0 || weatherId > MAX_ID) {
+            return CATEGORY_NONE;
+        }
+        return sCategories[weatherId];
+    }
+
+    /**
+     * @param category one of the CATEGORY_ constants
+     * @return the name used for this category in art pack urls, null for CATEGORY_NONE
+     */
+    public static String getArtSlug(int category) {
+        return ART_SLUGS[category];
+    }
+}
@@ -41,6 +41,7 @@ import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.example.android.sunshine.common.WeatherConditions;
 
 import java.lang.ref.WeakReference;
 import java.text.SimpleDateFormat;
@@ -70,6 +71,21 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
      */
     private static final int MSG_UPDATE_TIME = 0;
 
+    /**
+     * Icon for each WeatherConditions category.  Unknown conditions show as clear.
+     */
+    private static final int[] WEATHER_ICONS = {
+            R.drawable.ic_clear,
+            R.drawable.ic_storm,
+            R.drawable.ic_light_rain,
+            R.drawable.ic_rain,
+            R.drawable.ic_snow,
+            R.drawable.ic_fog,
+            R.drawable.ic_clear,
+            R.drawable.ic_light_clouds,
+            R.drawable.ic_cloudy
+    };
+
     @Override
     public Engine onCreateEngine() {
         return new Engine();
@@ -447,33 +463,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService {
             }
             mPng = weatherId;
 
-            int ic_id = R.drawable.ic_clear;
-
-            // Based on weather code data found at:
-            // http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
-            if (weatherId >= 200 && weatherId <= 232) {
-                ic_id = R.drawable.ic_storm;
-            } else if (weatherId >= 300 && weatherId <= 321) {
-                ic_id = R.drawable.ic_light_rain;
-            } else if (weatherId >= 500 && weatherId <= 504) {
-                ic_id = R.drawable.ic_rain;
-            } else if (weatherId == 511) {
-                ic_id = R.drawable.ic_snow;
-            } else if (weatherId >= 520 && weatherId <= 531) {
-                ic_id = R.drawable.ic_rain;
-            } else if (weatherId >= 600 && weatherId <= 622) {
-                ic_id = R.drawable.ic_snow;
-            } else if (weatherId >= 701 && weatherId <= 761) {
-                ic_id = R.drawable.ic_fog;
-            } else if (weatherId == 761 || weatherId == 781) {
-                ic_id = R.drawable.ic_storm;
-            } else if (weatherId == 800) {
-                ic_id = R.drawable.ic_clear;
-            } else if (weatherId == 801) {
-                ic_id = R.drawable.ic_light_clouds;
-            } else if (weatherId >= 802 && weatherId <= 804) {
-                ic_id = R.drawable.ic_cloudy;
-            }
+            int ic_id = WEATHER_ICONS[WeatherConditions.getCategory(weatherId)];
 
             mWeatherIcon = BitmapFactory.decodeResource(getApplicationContext().getResources(), ic_id);
         }